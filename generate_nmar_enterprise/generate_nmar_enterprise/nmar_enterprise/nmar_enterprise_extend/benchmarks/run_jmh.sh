@@ -0,0 +1,18 @@
+#!/usr/bin/env bash
+# Copyright © 2025 Devin B. Royal. All Rights Reserved.
+# Runs the JMH suite in java_nmar_bench once per thread count and writes one JSON result
+# file per run, so results can be diffed between builds. Extra args are passed to JMH
+# (e.g. a benchmark regex or -p meshSize=1024).
+set -Eeuo pipefail
+ROOT="$(cd "$(dirname "$0")"/.. && pwd)"
+THREADS="${THREADS:-1 2 4 8}"
+OUT_DIR="${OUT_DIR:-$ROOT/results/jmh}"
+mkdir -p "$OUT_DIR"
+
+mvn -B -q -f "$ROOT/java_nmar/pom.xml" install -DskipTests
+mvn -B -q -f "$ROOT/java_nmar_bench/pom.xml" package
+
+for t in $THREADS; do
+  java -jar "$ROOT/java_nmar_bench/target/benchmarks.jar" -t "$t" -rf json -rff "$OUT_DIR/jmh-t$t.json" "$@"
+done
+echo "JMH results written to $OUT_DIR"
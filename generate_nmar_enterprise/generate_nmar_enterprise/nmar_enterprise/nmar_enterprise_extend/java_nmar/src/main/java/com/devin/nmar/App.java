@@ -3,16 +3,22 @@ Copyright © 2025 Devin B. Royal. All Rights Reserved.
 */
 package com.devin.nmar;
 
+import com.devin.nmar.capacity.CapacityController;
 import com.devin.nmar.core.NeuroMesh;
 import com.devin.nmar.fusion.ModalityFusion;
 import com.devin.nmar.memory.MemoryAnchors;
 import com.devin.nmar.meta.MetaReasoner;
 import com.devin.nmar.learning.AdaptiveLearner;
+import com.devin.nmar.server.InferenceServer;
 
 import java.util.*;
 
 public class App {
     public static void main(String[] args) {
+        if (args.length > 0 && "serve".equals(args[0])) {
+            serve();
+            return;
+        }
         try {
             NeuroMesh mesh = new NeuroMesh(0.01, 1024);
             ModalityFusion fusion = new ModalityFusion(128);
@@ -47,6 +53,26 @@ public class App {
             System.exit(2);
         }
     }
+
+    /**
+     * Server mode: runs InferenceServer until the JVM is stopped (configured via NMAR_HTTP_* env vars),
+     * with the memory store sized to a heap budget (NMAR_CAPACITY_* env vars).
+     */
+    private static void serve() {
+        try {
+            MemoryAnchors memory = new MemoryAnchors(2000, 0.01);
+            CapacityController capacity = new CapacityController(null, memory, CapacityController.Config.fromEnv()).start();
+            InferenceServer server = new InferenceServer(new ModalityFusion(128), memory, InferenceServer.Config.fromEnv());
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                capacity.close();
+            }, "nmar-http-shutdown"));
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
 }
 
 /*
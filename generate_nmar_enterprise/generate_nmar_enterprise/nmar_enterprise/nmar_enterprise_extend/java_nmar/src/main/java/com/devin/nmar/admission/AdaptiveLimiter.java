@@ -0,0 +1,137 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * AdaptiveLimiter - concurrency limit that follows observed latency (TCP Vegas style).
+ * The lowest round-trip time seen is taken as the no-queueing cost of a request, so
+ * limit * (1 - minRtt / rtt), with rtt averaged over a window of about one limit's
+ * worth of samples, estimates how many admitted requests are waiting rather than
+ * working. The limit grows while that queue stays under alpha = 3 * log10(limit),
+ * shrinks once it passes beta = 6 * log10(limit), and backs off multiplicatively on drops
+ * (timeouts, deadline misses), settling just above the point where queueing starts.
+ * Excess load is then rejected up front instead of piling up on monitors and pools.
+ * Every probeInterval windows the limit is halved and minRtt re-measured, so a baseline
+ * taken while queued, or a backend that has become slower, does not stick.
+ */
+public class AdaptiveLimiter {
+    public static class Config {
+        public int initialLimit = 20;
+        public int minLimit = 2;
+        public int maxLimit = 256;
+        /** Weight of each new limit estimate. */
+        public double smoothing = 1.0;
+        /** Samples per update window; the window is at least as long as the limit. */
+        public int minWindow = 10;
+        /** Update windows between minRtt re-probes. */
+        public int probeInterval = 500;
+        public double backoffRatio = 0.9;
+        /** Source of round-trip timestamps; replaceable so tests can drive a virtual clock. */
+        public LongSupplier nanoClock = System::nanoTime;
+    }
+
+    private final Config cfg;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    private double estimate;
+    private double minRtt;
+    private double windowRtt;
+    private int windowCount;
+    private int windowMaxInFlight;
+    private int windowsSinceProbe;
+
+    public AdaptiveLimiter(Config cfg) {
+        this.cfg = cfg;
+        this.estimate = Math.max(cfg.minLimit, Math.min(cfg.maxLimit, cfg.initialLimit));
+        this.limit = (int) estimate;
+    }
+
+    /** One admitted unit of work; exactly one of success/dropped/ignore must be called. */
+    public final class Permit {
+        private final long startNanos = cfg.nanoClock.getAsLong();
+        private final int inFlightAtStart;
+        private boolean released;
+
+        private Permit(int inFlightAtStart) { this.inFlightAtStart = inFlightAtStart; }
+
+        /** Completed normally; its latency feeds the limit. */
+        public void success() {
+            if (release()) onSample(cfg.nanoClock.getAsLong() - startNanos, inFlightAtStart);
+        }
+
+        /** Timed out or shed because of overload; backs the limit off. */
+        public void dropped() {
+            if (release()) onDrop();
+        }
+
+        /** Finished without a meaningful latency (e.g. a client error). */
+        public void ignore() {
+            release();
+        }
+
+        private synchronized boolean release() {
+            if (released) return false;
+            released = true;
+            inFlight.decrementAndGet();
+            return true;
+        }
+    }
+
+    /** Returns a permit, or null when the current limit is reached. */
+    public Permit tryAcquire() {
+        while (true) {
+            int cur = inFlight.get();
+            if (cur >= limit) return null;
+            if (inFlight.compareAndSet(cur, cur + 1)) return new Permit(cur + 1);
+        }
+    }
+
+    public int limit() { return limit; }
+
+    public int inFlight() { return inFlight.get(); }
+
+    private synchronized void onSample(long rttNanos, int inFlightAtStart) {
+        double rtt = Math.max(1, rttNanos);
+        if (minRtt == 0 || rtt < minRtt) minRtt = rtt;
+        windowRtt += rtt;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtStart);
+        if (++windowCount < Math.max(cfg.minWindow, estimate)) return;
+        double avgRtt = windowRtt / windowCount;
+        int maxInFlight = windowMaxInFlight;
+        windowRtt = 0;
+        windowCount = 0;
+        windowMaxInFlight = 0;
+        if (++windowsSinceProbe >= cfg.probeInterval) {
+            // halve the limit so queues drain and the next samples show the real minimum
+            windowsSinceProbe = 0;
+            minRtt = 0;
+            update(estimate / 2);
+            return;
+        }
+        double log = Math.max(1, Math.log10(estimate));
+        double queue = estimate * (1 - minRtt / avgRtt);
+        if (queue > 6 * log) update(estimate - log);
+        // only grow while demand is actually pressing against the limit
+        else if (maxInFlight * 2 < estimate) return;
+        else if (queue <= log) update(estimate + 6 * log);
+        else if (queue < 3 * log) update(estimate + log);
+    }
+
+    private void update(double next) {
+        estimate = estimate * (1 - cfg.smoothing) + next * cfg.smoothing;
+        estimate = Math.max(cfg.minLimit, Math.min(cfg.maxLimit, estimate));
+        limit = (int) estimate;
+    }
+
+    private synchronized void onDrop() {
+        update(estimate * cfg.backoffRatio);
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,138 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.admission;
+
+import com.devin.nmar.metrics.Metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AdmissionController - single entry point for load management on the
+ * encode/fuse/mesh/memory path. Requests are admitted against an AdaptiveLimiter and
+ * rejected immediately (rather than queued) once the limit is reached or their
+ * Deadline has already passed. Inside an admitted request, optional work (learner
+ * updates, extra mesh propagation steps) is shed first: it is skipped when the system
+ * is running close to its limit or when its observed cost no longer fits in what is
+ * left of the request's budget, so the mandatory stages keep their time.
+ * Counters are shared by all controllers; the limit and in-flight gauges are exported
+ * per controller as nmar_admission_<name>_limit and nmar_admission_<name>_in_flight, so
+ * each controller in a process needs its own Config.name (a later controller with the
+ * same name takes over its gauges).
+ */
+public class AdmissionController {
+    private static final Metrics.Counter ADMITTED = Metrics.counter("nmar_admission_admitted", "Requests admitted");
+    private static final Metrics.Counter REJECTED = Metrics.counter("nmar_admission_rejected", "Requests rejected at the concurrency limit");
+    private static final Metrics.Counter EXPIRED = Metrics.counter("nmar_admission_expired", "Requests rejected because their deadline had already passed");
+
+    public static class Config {
+        /** Metric label for this controller's gauges; lower case, digits and '_'. */
+        public String name = "default";
+        public AdaptiveLimiter.Config limiter = new AdaptiveLimiter.Config();
+        /** inFlight / limit above which optional work is shed. */
+        public double optionalLoadThreshold = 0.75;
+    }
+
+    private final Config cfg;
+    private final AdaptiveLimiter limiter;
+    private final Map<String, Cost> costs = new ConcurrentHashMap<>();
+
+    public AdmissionController(Config cfg) {
+        this.cfg = cfg;
+        this.limiter = new AdaptiveLimiter(cfg.limiter);
+        if (!cfg.name.matches("[a-z0-9_]+")) throw new IllegalArgumentException("bad admission controller name: " + cfg.name);
+        Metrics.gauge("nmar_admission_" + cfg.name + "_limit", "Current adaptive concurrency limit of the " + cfg.name + " controller", limiter::limit);
+        Metrics.gauge("nmar_admission_" + cfg.name + "_in_flight", "Requests currently admitted by the " + cfg.name + " controller", limiter::inFlight);
+    }
+
+    public AdmissionController() { this(new Config()); }
+
+    /** Average cost of one unit of a kind of optional work, plus its shed counter. */
+    private static final class Cost {
+        final Metrics.Counter shed;
+        volatile double nanos;
+
+        Cost(String work) {
+            this.shed = Metrics.counter("nmar_admission_shed_" + work, "Optional " + work + " work shed under load");
+        }
+
+        synchronized void record(double sample) {
+            nanos = nanos == 0 ? sample : nanos + (sample - nanos) * 0.1;
+        }
+    }
+
+    private Cost cost(String work) {
+        return costs.computeIfAbsent(work, Cost::new);
+    }
+
+    /** Permit for a new request, or null when it should be rejected (overloaded or already late). */
+    public AdaptiveLimiter.Permit admit(Deadline deadline) {
+        if (deadline.expired()) {
+            EXPIRED.increment();
+            return null;
+        }
+        AdaptiveLimiter.Permit p = limiter.tryAcquire();
+        if (p == null) {
+            REJECTED.increment();
+            return null;
+        }
+        ADMITTED.increment();
+        return p;
+    }
+
+    /** Fraction of the current limit in use. */
+    public double load() {
+        return (double) limiter.inFlight() / Math.max(1, limiter.limit());
+    }
+
+    /** True when one unit of {@code work} should run for a request with this deadline. */
+    public boolean allowOptional(String work, Deadline deadline) {
+        Cost c = cost(work);
+        if (load() > cfg.optionalLoadThreshold || deadline.remainingNanos() < c.nanos) {
+            c.shed.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /** Runs {@code work} unless allowOptional says to shed it; returns whether it ran. */
+    public boolean runOptional(String work, Deadline deadline, Runnable body) {
+        if (!allowOptional(work, deadline)) return false;
+        long t0 = System.nanoTime();
+        body.run();
+        cost(work).record(System.nanoTime() - t0);
+        return true;
+    }
+
+    /**
+     * How many of {@code maxSteps} repetitions of {@code work} to run: scaled down
+     * linearly as load goes from the optional threshold to the limit, and capped by the
+     * number of steps whose observed cost fits in the remaining budget.
+     */
+    public int affordableSteps(String work, Deadline deadline, int maxSteps) {
+        Cost c = cost(work);
+        double load = load();
+        int steps = maxSteps;
+        if (load > cfg.optionalLoadThreshold) {
+            double headroom = Math.max(0, (1 - load) / (1 - cfg.optionalLoadThreshold));
+            steps = (int) Math.floor(maxSteps * headroom);
+        }
+        if (c.nanos > 0 && !deadline.isNone()) {
+            steps = (int) Math.min(steps, deadline.remainingNanos() / c.nanos);
+        }
+        if (steps < maxSteps) c.shed.add(maxSteps - steps);
+        return steps;
+    }
+
+    /** Feeds the per-step cost used by affordableSteps. */
+    public void recordSteps(String work, int steps, long nanos) {
+        if (steps > 0) cost(work).record((double) nanos / steps);
+    }
+
+    public AdaptiveLimiter limiter() { return limiter; }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
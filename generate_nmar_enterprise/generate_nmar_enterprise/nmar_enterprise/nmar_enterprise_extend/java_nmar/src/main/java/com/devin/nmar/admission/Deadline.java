@@ -0,0 +1,69 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.admission;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline - absolute point on the System.nanoTime clock by which a request must finish.
+ * Created once at the edge (HTTP handler, pipeline submit) and handed to every stage,
+ * which checks it before starting work instead of finding out after.
+ */
+public final class Deadline {
+    private static final Deadline NONE = new Deadline(0, true);
+
+    private final long atNanos;
+    private final boolean none;
+
+    private Deadline(long atNanos, boolean none) {
+        this.atNanos = atNanos;
+        this.none = none;
+    }
+
+    public static Deadline after(long amount, TimeUnit unit) {
+        long now = System.nanoTime();
+        long timeout = Math.max(0, unit.toNanos(amount));
+        // saturate instead of wrapping for very long timeouts
+        long at = now + timeout < now ? Long.MAX_VALUE : now + timeout;
+        return new Deadline(at, false);
+    }
+
+    public static Deadline none() { return NONE; }
+
+    public boolean isNone() { return none; }
+
+    /** Nanoseconds left, Long.MAX_VALUE without a deadline, never negative. */
+    public long remainingNanos() {
+        return none ? Long.MAX_VALUE : Math.max(0, atNanos - System.nanoTime());
+    }
+
+    public long remainingMillis() {
+        return none ? Long.MAX_VALUE : TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    public boolean expired() {
+        return !none && atNanos - System.nanoTime() <= 0;
+    }
+
+    /** The earlier of the two deadlines. */
+    public Deadline min(Deadline other) {
+        if (none) return other;
+        if (other.none) return this;
+        return atNanos - other.atNanos <= 0 ? this : other;
+    }
+
+    /** Throws DeadlineExceededException naming {@code where} if the deadline has passed. */
+    public void check(String where) {
+        if (expired()) throw new DeadlineExceededException(where);
+    }
+
+    @Override
+    public String toString() {
+        return none ? "Deadline[none]" : "Deadline[" + remainingMillis() + "ms left]";
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,23 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.admission;
+
+/**
+ * DeadlineExceededException - a request's Deadline passed before {@code where} could run.
+ */
+public class DeadlineExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String where) {
+        super("deadline exceeded before " + where);
+    }
+
+    public DeadlineExceededException(String where, Throwable cause) {
+        super("deadline exceeded before " + where, cause);
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
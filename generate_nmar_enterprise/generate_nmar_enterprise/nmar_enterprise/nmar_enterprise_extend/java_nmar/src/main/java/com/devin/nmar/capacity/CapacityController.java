@@ -0,0 +1,280 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.capacity;
+
+import com.devin.nmar.core.NeuroMesh;
+import com.devin.nmar.memory.MemoryAnchors;
+import com.devin.nmar.metrics.Metrics;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * CapacityController - sizes NeuroMesh.maxNodes and MemoryAnchors.maxChunks to a heap
+ * budget instead of fixed counts. Retained bytes are estimated per node, edge and chunk
+ * from the object layout of the live structures (chunk text included), and the estimate is
+ * calibrated against the heap actually retained after GC: whenever a collection moves the
+ * after-GC heap along with a significant change in the estimate, the ratio of the two
+ * deltas becomes the new calibration. Targets are recomputed on a fixed interval and right
+ * after every GC or heap-threshold notification; while the after-GC heap stays above
+ * criticalHeapFraction of the maximum the effective budget shrinks further each round.
+ * Lowered caps are then worked off in evictionBatch-sized batches, releasing the
+ * structure's lock between batches, so request threads are never stalled behind one big
+ * eviction. The chunk cap never exceeds maxChunksCeiling: retrieve scans every heap chunk,
+ * so a large heap budget alone would otherwise let per-request latency grow with it.
+ * Gauges are exported per controller as nmar_capacity_<name>_*, so each controller in a
+ * process needs its own Config.name; close() unregisters them.
+ */
+public class CapacityController implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(CapacityController.class.getName());
+    private static final Metrics.Counter ADJUSTMENTS = Metrics.counter("nmar_capacity_adjustments", "Capacity target recomputations");
+    private static final Metrics.Counter GC_NOTIFICATIONS = Metrics.counter("nmar_capacity_gc_notifications", "GC notifications seen by the capacity controller");
+    private static final Metrics.Counter PRESSURE_EVENTS = Metrics.counter("nmar_capacity_pressure_events", "Adjustments made with the heap above its critical fraction");
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+    // Approximate retained sizes with compressed oops: the Node object, its key String,
+    // its edge HashMap and its entry in the mesh map; one HashMap entry with boxed Long and
+    // Double per edge; a Chunk with its UUID, Instant, two Strings and its store entry
+    // (text at one byte per char, as compact Strings store Latin-1).
+    static final long NODE_BYTES = 288;
+    static final long EDGE_BYTES = 72;
+    static final long CHUNK_BYTES = 208;
+    private static final long CALIBRATION_MIN_DELTA = 1 << 20;
+
+    public static class Config {
+        /** Metric label for this controller's gauges; lower case, digits and '_'. */
+        public String name = "default";
+        public long budgetBytes = Runtime.getRuntime().maxMemory() / 2;
+        /** Part of the budget given to the mesh; the rest goes to memory chunks. */
+        public double meshShare = 0.3;
+        /** After-GC heap use, as a fraction of the maximum heap, above which the budget is cut. */
+        public double criticalHeapFraction = 0.85;
+        public long intervalMillis = 1000;
+        /** Most nodes or chunks evicted per lock hold. */
+        public int evictionBatch = NeuroMesh.EVICTION_BATCH;
+        /**
+         * Upper bound on the chunk cap whatever the budget. retrieve is a linear scan of the
+         * heap store (roughly 0.1us per chunk), so the default keeps it near 5ms per call.
+         */
+        public int maxChunksCeiling = 50_000;
+
+        /**
+         * Reads NMAR_CAPACITY_BUDGET_MB, NMAR_CAPACITY_MESH_SHARE and NMAR_CAPACITY_MAX_CHUNKS,
+         * keeping defaults for unset values.
+         */
+        public static Config fromEnv() {
+            Config c = new Config();
+            String mb = System.getenv("NMAR_CAPACITY_BUDGET_MB");
+            if (mb != null && !mb.isBlank()) c.budgetBytes = Long.parseLong(mb.trim()) << 20;
+            String share = System.getenv("NMAR_CAPACITY_MESH_SHARE");
+            if (share != null && !share.isBlank()) c.meshShare = Double.parseDouble(share.trim());
+            String maxChunks = System.getenv("NMAR_CAPACITY_MAX_CHUNKS");
+            if (maxChunks != null && !maxChunks.isBlank()) c.maxChunksCeiling = Integer.parseInt(maxChunks.trim());
+            return c;
+        }
+    }
+
+    private final NeuroMesh mesh;
+    private final MemoryAnchors memory;
+    private final Config cfg;
+    private final List<Runnable> unregister = new ArrayList<>();
+    private volatile ScheduledExecutorService executor;
+    private volatile boolean closed;
+
+    private volatile double calibration = 1.0;
+    private volatile double pressure = 1.0;
+    private volatile long meshBytes;
+    private volatile long memoryBytes;
+    private volatile long heapAfterGc;
+    private long lastHeap;
+    private long lastRaw;
+
+    /** Either structure may be null when only the other is managed. */
+    public CapacityController(NeuroMesh mesh, MemoryAnchors memory, Config cfg) {
+        this.mesh = mesh;
+        this.memory = memory;
+        this.cfg = cfg;
+        if (!cfg.name.matches("[a-z0-9_]+")) throw new IllegalArgumentException("bad capacity controller name: " + cfg.name);
+        gauge("budget_bytes", "Effective heap budget for mesh and memory", () -> (long) (cfg.budgetBytes * pressure));
+        gauge("mesh_bytes", "Estimated retained bytes of the mesh", () -> meshBytes);
+        gauge("memory_bytes", "Estimated retained bytes of memory chunks", () -> memoryBytes);
+        gauge("heap_after_gc_bytes", "Heap in use after the last collection", () -> heapAfterGc);
+        gauge("calibration_permille", "Observed / estimated retained bytes, in thousandths", () -> Math.round(calibration * 1000));
+        gauge("max_nodes", "Current NeuroMesh node cap", () -> mesh == null ? 0 : mesh.maxNodes());
+        gauge("max_chunks", "Current MemoryAnchors chunk cap", () -> memory == null ? 0 : memory.maxChunks());
+    }
+
+    private void gauge(String metric, String help, LongSupplier supplier) {
+        String name = "nmar_capacity_" + cfg.name + "_" + metric;
+        Metrics.gauge(name, help + " (" + cfg.name + " controller)", supplier);
+        unregister.add(() -> Metrics.unregister(name, supplier));
+    }
+
+    /** Adjusts every intervalMillis and after each GC or heap-threshold notification. */
+    public synchronized CapacityController start() {
+        if (executor != null) return this;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "nmar-capacity");
+            t.setDaemon(true);
+            return t;
+        });
+        NotificationListener onGc = (n, handback) -> {
+            GC_NOTIFICATIONS.increment();
+            schedule();
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) listen((NotificationEmitter) gc, onGc, GC_NOTIFICATION);
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                long previous = pool.getCollectionUsageThreshold();
+                pool.setCollectionUsageThreshold((long) (max * cfg.criticalHeapFraction));
+                unregister.add(() -> pool.setCollectionUsageThreshold(previous));
+            }
+        }
+        listen((NotificationEmitter) ManagementFactory.getMemoryMXBean(), (n, handback) -> schedule(),
+                MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED);
+        executor.scheduleWithFixedDelay(this::adjustSafely, 0, Math.max(1, cfg.intervalMillis), TimeUnit.MILLISECONDS);
+        LOG.info(() -> "CapacityController started budgetBytes=" + cfg.budgetBytes + " meshShare=" + cfg.meshShare);
+        return this;
+    }
+
+    private void listen(NotificationEmitter emitter, NotificationListener l, String type) {
+        emitter.addNotificationListener(l, (Notification n) -> type.equals(n.getType()), null);
+        unregister.add(() -> {
+            try {
+                emitter.removeNotificationListener(l);
+            } catch (ListenerNotFoundException ignored) {
+                // already gone
+            }
+        });
+    }
+
+    private void schedule() {
+        ScheduledExecutorService ex = executor;
+        if (closed || ex == null) return;
+        try {
+            ex.execute(this::adjustSafely);
+        } catch (RejectedExecutionException ignored) {
+            // closing
+        }
+    }
+
+    private void adjustSafely() {
+        try {
+            adjust();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "capacity adjustment failed", e);
+        }
+    }
+
+    /**
+     * Re-estimates usage, recomputes both caps and evicts down to them batch by batch.
+     * Normally driven by start(); callable directly for a one-off adjustment.
+     */
+    public void adjust() {
+        int nodes = mesh == null ? 0 : mesh.nodeCount();
+        long edges = mesh == null ? 0 : mesh.edgeCount();
+        int chunks = memory == null ? 0 : memory.size();
+        long chars = memory == null ? 0 : memory.textChars();
+        long meshRaw = nodes * NODE_BYTES + edges * EDGE_BYTES;
+        long memoryRaw = chunks * CHUNK_BYTES + chars;
+        long heap = heapAfterGc();
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        int maxNodes;
+        int maxChunks;
+        synchronized (this) {
+            calibrate(heap, meshRaw + memoryRaw);
+            double cal = calibration;
+            meshBytes = (long) (meshRaw * cal);
+            memoryBytes = (long) (memoryRaw * cal);
+            heapAfterGc = heap;
+            if (maxHeap != Long.MAX_VALUE && heap > cfg.criticalHeapFraction * maxHeap) {
+                PRESSURE_EVENTS.increment();
+                pressure = Math.max(0.25, pressure * 0.8);
+            } else {
+                pressure = Math.min(1.0, pressure * 1.1);
+            }
+            double budget = cfg.budgetBytes * pressure;
+            double meshBudget = mesh == null ? 0 : (memory == null ? budget : budget * cfg.meshShare);
+            double perNode = cal * (NODE_BYTES + EDGE_BYTES * (nodes == 0 ? 4.0 : (double) edges / nodes));
+            double perChunk = cal * (CHUNK_BYTES + (chunks == 0 ? 256.0 : (double) chars / chunks));
+            maxNodes = (int) Math.min(Integer.MAX_VALUE, meshBudget / perNode);
+            maxChunks = (int) Math.min(cfg.maxChunksCeiling, (budget - meshBudget) / perChunk);
+        }
+        if (mesh != null) mesh.setMaxNodes(maxNodes);
+        if (memory != null) memory.setMaxChunks(maxChunks);
+        ADJUSTMENTS.increment();
+        // each call holds a lock for one batch only, so requests interleave with the eviction
+        int evicted;
+        do {
+            evicted = 0;
+            if (mesh != null) evicted += mesh.trimToCapacity(cfg.evictionBatch);
+            if (memory != null) evicted += memory.trimToCapacity(cfg.evictionBatch);
+            if (evicted > 0) Thread.yield();
+        } while (evicted > 0 && !closed);
+    }
+
+    /** Folds the observed heap change per estimated byte into the calibration once both moved enough. */
+    private void calibrate(long heap, long raw) {
+        if (lastRaw == 0 || lastHeap == 0) {
+            lastHeap = heap;
+            lastRaw = raw;
+            return;
+        }
+        long dRaw = raw - lastRaw;
+        long dHeap = heap - lastHeap;
+        if (heap == lastHeap || Math.abs(dRaw) < CALIBRATION_MIN_DELTA) return;
+        double sample = Math.max(0.5, Math.min(4.0, (double) dHeap / dRaw));
+        calibration += (sample - calibration) * 0.3;
+        lastHeap = heap;
+        lastRaw = raw;
+    }
+
+    /** Heap retained after the most recent collection of each heap pool; current use before any GC. */
+    static long heapAfterGc() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || pool.getCollectionUsage() == null) continue;
+            used += pool.getCollectionUsage().getUsed();
+        }
+        return used > 0 ? used : ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    public double calibration() { return calibration; }
+
+    public long meshBytes() { return meshBytes; }
+
+    public long memoryBytes() { return memoryBytes; }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Runnable r : unregister) r.run();
+        unregister.clear();
+        if (executor != null) executor.shutdownNow();
+        executor = null;
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
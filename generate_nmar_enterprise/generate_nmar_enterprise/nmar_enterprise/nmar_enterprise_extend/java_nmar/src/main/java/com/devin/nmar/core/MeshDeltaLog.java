@@ -0,0 +1,246 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.core;
+
+import com.devin.nmar.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * MeshDeltaLog - writer side of single-writer NeuroMesh replication. Attach it with
+ * {@code mesh.setMutationListener(log)}; each mesh operation becomes one frame
+ * [int length][int crc32][records...] appended to the log file, which any number of
+ * MeshReplica readers tail. Frames are buffered and written every {@code flushMillis}
+ * (or sooner once 64KB is pending) so bursts of addEdge calls cost one write.
+ * Attaching writes a reset plus a full snapshot, so a restarted writer can keep
+ * appending to the same file; opening the log first truncates any torn or corrupt tail
+ * left by a crashed writer (counted in nmar_mesh_log_truncated_bytes), so new frames
+ * start on a frame boundary the replicas can reach.
+ * Listener callbacks run under the writer mesh's lock and never throw: a write error
+ * marks the log failed (logged, counted in nmar_mesh_log_write_failures) and is
+ * rethrown by the next explicit flush() or sync(). A failed or closed log discards
+ * further batches, counting them in nmar_mesh_log_dropped_batches; re-attach the mesh
+ * to a new log to resume replication.
+ */
+public class MeshDeltaLog implements MeshMutationListener, AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(MeshDeltaLog.class.getName());
+    private static final Metrics.Counter BATCHES = Metrics.counter("nmar_mesh_log_batches", "Mesh delta-log batches written");
+    private static final Metrics.Counter BYTES = Metrics.counter("nmar_mesh_log_bytes", "Mesh delta-log bytes written");
+    private static final Metrics.Counter FAILURES = Metrics.counter("nmar_mesh_log_write_failures", "Mesh delta-log write errors; the log stops after one");
+    private static final Metrics.Counter DROPPED = Metrics.counter("nmar_mesh_log_dropped_batches", "Mesh batches discarded by a closed or failed delta log");
+    private static final Metrics.Counter TRUNCATED = Metrics.counter("nmar_mesh_log_truncated_bytes", "Torn or corrupt delta-log tail bytes truncated on open");
+
+    static final byte RESET = 0;
+    static final byte CREATE = 1;
+    static final byte EDGE = 2;
+    static final byte ACTIVATION = 3;
+    static final byte REMOVE = 4;
+    static final byte EDGE_REMOVE = 5;
+
+    private static final int FLUSH_BYTES = 64 * 1024;
+
+    private final FileChannel ch;
+    private ByteBuffer batch = ByteBuffer.allocate(4096);
+    private ByteBuffer out = ByteBuffer.allocate(FLUSH_BYTES * 2);
+    private final Thread flusher;
+    private boolean closed;
+    private IOException failure;
+
+    public MeshDeltaLog(Path file, long flushMillis) {
+        try {
+            this.ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = ch.size(), valid = validLength(ch);
+            if (valid < size) {
+                LOG.warning("mesh delta log " + file + ": truncating " + (size - valid) + " bytes of torn tail at " + valid);
+                TRUNCATED.add(size - valid);
+                ch.truncate(valid);
+                ch.force(true);
+            }
+            ch.position(valid);
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+        long interval = Math.max(1, flushMillis);
+        this.flusher = new Thread(() -> {
+            synchronized (this) {
+                while (!closed) {
+                    try {
+                        wait(interval);
+                        tryWrite();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "nmar-mesh-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /** Length of the prefix of whole frames whose CRC matches; everything after it is a torn tail. */
+    static long validLength(FileChannel ch) throws IOException {
+        long size = ch.size(), pos = 0;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        ByteBuffer body = ByteBuffer.allocate(4096);
+        CRC32 crc = new CRC32();
+        while (pos + 8 <= size) {
+            header.clear();
+            if (read(ch, header, pos) < 8) break;
+            int len = header.getInt(0);
+            if (len <= 0 || pos + 8 + len > size) break;
+            if (body.capacity() < len) body = ByteBuffer.allocate(Math.max(len, body.capacity() * 2));
+            body.clear().limit(len);
+            if (read(ch, body, pos + 8) < len) break;
+            crc.reset();
+            crc.update(body.flip());
+            if ((int) crc.getValue() != header.getInt(4)) break;
+            pos += 8 + len;
+        }
+        return pos;
+    }
+
+    private static int read(FileChannel ch, ByteBuffer dst, long at) throws IOException {
+        int n = 0;
+        while (dst.hasRemaining()) {
+            int r = ch.read(dst, at + n);
+            if (r < 0) break;
+            n += r;
+        }
+        return n;
+    }
+
+    @Override public synchronized void reset() { record(1).put(RESET); }
+
+    @Override
+    public synchronized void nodeCreated(long id, String key, double activation) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        record(21 + k.length).put(CREATE).putLong(id).putDouble(activation).putInt(k.length).put(k);
+    }
+
+    @Override
+    public synchronized void edgeSet(long fromId, long toId, double weight) {
+        record(25).put(EDGE).putLong(fromId).putLong(toId).putDouble(weight);
+    }
+
+    @Override
+    public synchronized void activationSet(long id, double activation) {
+        record(17).put(ACTIVATION).putLong(id).putDouble(activation);
+    }
+
+    @Override public synchronized void nodeRemoved(long id) { record(9).put(REMOVE).putLong(id); }
+
+    @Override
+    public synchronized void edgeRemoved(long fromId, long toId) {
+        record(17).put(EDGE_REMOVE).putLong(fromId).putLong(toId);
+    }
+
+    @Override
+    public synchronized void endOfBatch() {
+        if (batch.position() == 0) return;
+        if (closed || failure != null) {
+            batch.clear();
+            DROPPED.increment();
+            return;
+        }
+        batch.flip();
+        CRC32 crc = new CRC32();
+        crc.update(batch.duplicate());
+        int frame = 8 + batch.remaining();
+        if (out.remaining() < frame) {
+            if (!tryWrite()) {
+                batch.clear();
+                DROPPED.increment();
+                return;
+            }
+            if (out.capacity() < frame) out = ByteBuffer.allocate(frame);
+        }
+        out.putInt(batch.remaining()).putInt((int) crc.getValue()).put(batch);
+        batch.clear();
+        BATCHES.increment();
+        if (out.position() >= FLUSH_BYTES) tryWrite();
+    }
+
+    private ByteBuffer record(int bytes) {
+        if (batch.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(batch.capacity() * 2, batch.position() + bytes));
+            batch.flip();
+            bigger.put(batch);
+            batch = bigger;
+        }
+        return batch;
+    }
+
+    /** Writes buffered frames to the file; they are visible to replicas once this returns. */
+    public synchronized void flush() {
+        if (!tryWrite()) throw new UncheckedIOException("mesh delta-log failed", failure);
+    }
+
+    /** flush() plus fsync, for a durable log rather than just a visible one. */
+    public synchronized void sync() {
+        flush();
+        try { ch.force(false); } catch (IOException e) { throw new UncheckedIOException(fail(e)); }
+    }
+
+    /** The write error that stopped this log, or null while it is healthy. */
+    public synchronized IOException failure() { return failure; }
+
+    // writes pending frames; an error marks the log failed instead of escaping into the mesh lock
+    private boolean tryWrite() {
+        if (failure != null) return false;
+        if (out.position() == 0) return true;
+        out.flip();
+        try {
+            int n = out.remaining();
+            while (out.hasRemaining()) ch.write(out);
+            BYTES.add(n);
+            return true;
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        } finally {
+            out.clear();
+        }
+    }
+
+    private IOException fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+            FAILURES.increment();
+            LOG.log(Level.SEVERE, "mesh delta-log write failed; replication stops until the mesh is re-attached to a new log", e);
+        }
+        return failure;
+    }
+
+    /**
+     * Detach the log from its mesh first; batches arriving after close are discarded and
+     * counted in nmar_mesh_log_dropped_batches.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+        }
+        try { flusher.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        synchronized (this) {
+            try {
+                if (failure == null) sync();
+            } finally {
+                try { ch.close(); } catch (IOException e) { throw new UncheckedIOException(e); }
+            }
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,32 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.core;
+
+/**
+ * MeshMutationListener - receives every state change of a NeuroMesh as absolute values
+ * (edge weights and activations after the change, not deltas), so replaying the calls
+ * in order reproduces the mesh exactly. Calls arrive under the mesh lock and must not
+ * call back into the mesh.
+ */
+public interface MeshMutationListener {
+    /** Discard everything seen so far; a full snapshot follows. */
+    void reset();
+
+    void nodeCreated(long id, String key, double activation);
+
+    void edgeSet(long fromId, long toId, double weight);
+
+    void activationSet(long id, double activation);
+
+    void nodeRemoved(long id);
+
+    void edgeRemoved(long fromId, long toId);
+
+    /** Closes the batch of calls made by one mesh operation; replicas apply batches atomically. */
+    void endOfBatch();
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
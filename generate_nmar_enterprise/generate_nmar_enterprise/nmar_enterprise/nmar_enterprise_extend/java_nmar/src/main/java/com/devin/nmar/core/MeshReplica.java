@@ -0,0 +1,243 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.core;
+
+import com.devin.nmar.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * MeshReplica - read replica of a NeuroMesh fed by a MeshDeltaLog file. poll() applies
+ * every complete frame appended since the last call, each frame atomically under the
+ * replica mesh's lock; start() polls on a background thread. The replica does no
+ * learning, pruning or eviction of its own, so it converges to the writer's state.
+ * mesh() is read-only: its mutators throw IllegalStateException, since a local prune
+ * would drop nodes that later records still refer to. Use lookups and
+ * NeuroMesh.propagatedActivations() for propagation reads.
+ * A frame that fails its CRC is normally one still being written and is retried on the
+ * next poll. If it keeps failing for CORRUPT_RETRIES polls while the file has stopped
+ * growing, it is corrupt: the replica logs it, counts it in
+ * nmar_mesh_replica_corrupt_frames and fails, since skipping a frame would diverge
+ * silently. poll() then throws and the background poller stops; recover by opening a new
+ * replica on a log the writer has re-attached to a fresh file.
+ */
+public class MeshReplica implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(MeshReplica.class.getName());
+    private static final Metrics.Counter APPLIED = Metrics.counter("nmar_mesh_replica_batches", "Delta-log batches applied by mesh replicas");
+    private static final Metrics.Counter CORRUPT = Metrics.counter("nmar_mesh_replica_corrupt_frames", "Corrupt delta-log frames that stopped a mesh replica");
+    /** Polls a CRC mismatch may persist, with the file size unchanged, before the frame counts as corrupt. */
+    static final int CORRUPT_RETRIES = 3;
+
+    private final Path file;
+    private final NeuroMesh mesh;
+    private FileChannel ch;
+    private long position;
+    private ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+    private long batches;
+    private long polls;
+    private long mismatchPoll;
+    private long mismatchAt = -1;
+    private long mismatchSize;
+    private int mismatches;
+    private IllegalStateException failure;
+    private Thread poller;
+    private volatile boolean closed;
+
+    public MeshReplica(Path file, double pruneThreshold) {
+        this.file = file;
+        this.mesh = new NeuroMesh(pruneThreshold, Integer.MAX_VALUE, 1, 1, true);
+    }
+
+    /** The replicated mesh, read-only. */
+    public NeuroMesh mesh() { return mesh; }
+
+    /** Applies all complete frames written since the last poll; returns how many. */
+    public synchronized int poll() {
+        if (failure != null) throw failure;
+        polls++;
+        try {
+            if (ch == null) {
+                if (!Files.exists(file)) return 0;
+                ch = FileChannel.open(file, StandardOpenOption.READ);
+            }
+            long size = ch.size();
+            if (size < position) {
+                // the log was truncated or replaced: start over
+                position = 0;
+                mesh.applyReset();
+            }
+            int applied = 0;
+            while (position < size) {
+                buf.clear();
+                int n = ch.read(buf, position);
+                if (n <= 0) break;
+                buf.flip();
+                int pos = 0;
+                while (pos + 8 <= buf.limit()) {
+                    int len = buf.getInt(pos);
+                    if (len <= 0 || len > (1 << 30)) throw fail(position + pos, "length " + len);
+                    int body = pos + 8;
+                    if (body + len > buf.limit()) break;
+                    CRC32 crc = new CRC32();
+                    crc.update(buf.duplicate().position(body).limit(body + len));
+                    if ((int) crc.getValue() != buf.getInt(pos + 4)) {
+                        // usually a frame whose bytes are not all visible yet; retry on the next poll
+                        checkMismatch(position + pos, size);
+                        break;
+                    }
+                    mismatchAt = -1;
+                    apply(buf, body, body + len);
+                    applied++;
+                    pos = body + len;
+                }
+                if (pos == 0) {
+                    int need = buf.limit() >= 8 ? buf.getInt(0) + 8 : 8;
+                    if (need <= buf.capacity() || position + need > size) break;
+                    buf = ByteBuffer.allocate(need);
+                    continue;
+                }
+                position += pos;
+            }
+            batches += applied;
+            APPLIED.add(applied);
+            return applied;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // a mismatch at the same frame across polls of an unchanged file is corruption, not a torn read
+    private void checkMismatch(long at, long size) {
+        if (at != mismatchAt || size != mismatchSize) {
+            mismatchAt = at;
+            mismatchSize = size;
+            mismatches = 0;
+        } else if (mismatchPoll == polls) {
+            return;
+        }
+        mismatchPoll = polls;
+        if (++mismatches >= CORRUPT_RETRIES) throw fail(at, "crc mismatch after " + mismatches + " polls");
+    }
+
+    private IllegalStateException fail(long at, String why) {
+        failure = new IllegalStateException("corrupt mesh delta-log frame at " + at + " in " + file + ": " + why);
+        CORRUPT.increment();
+        LOG.severe(failure.getMessage());
+        return failure;
+    }
+
+    /** The corruption that stopped this replica, or null while it is healthy. */
+    public synchronized IllegalStateException failure() { return failure; }
+
+    private void apply(ByteBuffer b, int pos, int end) {
+        synchronized (mesh) {
+            while (pos < end) {
+                byte type = b.get(pos++);
+                switch (type) {
+                    case MeshDeltaLog.RESET:
+                        mesh.applyReset();
+                        break;
+                    case MeshDeltaLog.CREATE: {
+                        long id = b.getLong(pos);
+                        double act = b.getDouble(pos + 8);
+                        int kLen = b.getInt(pos + 16);
+                        byte[] k = new byte[kLen];
+                        b.get(pos + 20, k);
+                        mesh.applyCreate(id, new String(k, StandardCharsets.UTF_8), act);
+                        pos += 20 + kLen;
+                        break;
+                    }
+                    case MeshDeltaLog.EDGE:
+                        mesh.applyEdge(b.getLong(pos), b.getLong(pos + 8), b.getDouble(pos + 16));
+                        pos += 24;
+                        break;
+                    case MeshDeltaLog.ACTIVATION:
+                        mesh.applyActivation(b.getLong(pos), b.getDouble(pos + 8));
+                        pos += 16;
+                        break;
+                    case MeshDeltaLog.REMOVE:
+                        mesh.applyRemove(b.getLong(pos));
+                        pos += 8;
+                        break;
+                    case MeshDeltaLog.EDGE_REMOVE:
+                        mesh.applyEdgeRemove(b.getLong(pos), b.getLong(pos + 8));
+                        pos += 16;
+                        break;
+                    default:
+                        throw new IllegalStateException("unknown mesh delta-log record type " + type);
+                }
+            }
+        }
+    }
+
+    /** Polls every {@code intervalMillis} on a daemon thread until close(). */
+    public synchronized MeshReplica start(long intervalMillis) {
+        if (poller != null) return this;
+        long interval = Math.max(1, intervalMillis);
+        poller = new Thread(() -> {
+            while (!closed) {
+                try {
+                    poll();
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    // close() interrupts a poll mid-read (ClosedByInterruptException): not a failure
+                    if (closed || failure() != null) return;
+                    LOG.log(Level.SEVERE, "mesh replica poll failed", e);
+                    try { Thread.sleep(interval); } catch (InterruptedException ie) { return; }
+                }
+            }
+        }, "nmar-mesh-replica");
+        poller.setDaemon(true);
+        poller.start();
+        return this;
+    }
+
+    /** Log bytes applied so far; compare with the file size for replication lag. */
+    public synchronized long position() { return position; }
+
+    public synchronized long lagBytes() {
+        try { return ch == null ? (Files.exists(file) ? Files.size(file) : 0) : Math.max(0, ch.size() - position); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    public synchronized Map<String,Object> snapshot() {
+        Map<String,Object> out = mesh.snapshot();
+        out.put("logPosition", position);
+        out.put("batchesApplied", batches);
+        return out;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Thread t;
+        synchronized (this) { t = poller; }
+        if (t != null) {
+            t.interrupt();
+            try { t.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+        synchronized (this) {
+            if (ch != null) {
+                try { ch.close(); } catch (IOException e) { throw new UncheckedIOException(e); }
+            }
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -3,6 +3,10 @@ Copyright © 2025 Devin B. Royal. All Rights Reserved.
 */
 package com.devin.nmar.core;
 
+import com.devin.nmar.metrics.LatencyHistogram;
+import com.devin.nmar.metrics.Metrics;
+import com.devin.nmar.metrics.NmarEvents;
+
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
@@ -11,13 +15,32 @@ import java.util.logging.Logger;
 /**
  * NeuroMesh - dynamic graph topology with rewiring, pruning, and neurogenesis.
  * Designed for integration with real embeddings or incremental learning signals.
+ * maxNodes can be changed at runtime (see CapacityController); the overshoot after a
+ * lowered cap is worked off at most EVICTION_BATCH nodes per lock hold, each batch picked
+ * by partial selection rather than sorting the whole mesh.
+ * A replica mesh (see MeshReplica) is read-only: every public mutator throws, and
+ * propagatedActivations() gives the result of a propagation without applying it.
  */
 public class NeuroMesh {
     private static final Logger LOG = Logger.getLogger(NeuroMesh.class.getName());
+    private static final Metrics.Counter NODES = Metrics.upDownCounter("nmar_mesh_nodes", "Live nodes across all meshes");
+    private static final Metrics.Counter EDGES = Metrics.upDownCounter("nmar_mesh_edges", "Live edges across all meshes");
+    private static final Metrics.Counter NODES_CREATED = Metrics.counter("nmar_mesh_nodes_created", "Nodes created");
+    private static final Metrics.Counter NODES_PRUNED = Metrics.counter("nmar_mesh_nodes_pruned", "Nodes removed by prune");
+    private static final Metrics.Counter NODES_EVICTED = Metrics.counter("nmar_mesh_nodes_evicted", "Nodes evicted by the maxNodes cap");
+    private static final Metrics.Counter EDGES_PRUNED = Metrics.counter("nmar_mesh_edges_pruned", "Edges removed by prune or node removal");
+    static final LatencyHistogram PROPAGATE_TIME = Metrics.timer("nmar_mesh_propagate_seconds", "NeuroMesh.propagate latency");
+    private static final LatencyHistogram PRUNE_TIME = Metrics.timer("nmar_mesh_prune_seconds", "NeuroMesh prune pass latency");
+    /** Most nodes one eviction pass removes while holding the mesh lock. */
+    public static final int EVICTION_BATCH = 256;
     private final Map<Long, Node> nodes = new HashMap<>();
-    private final AtomicLong idGen = new AtomicLong(1);
+    private final AtomicLong idGen;
+    private final long idStride;
     private final double pruneThreshold;
-    private final int maxNodes;
+    private volatile int maxNodes;
+    private long edgeCount;
+    private MeshMutationListener listener;
+    private final boolean readOnly;
 
     public static class Node {
         public final long id;
@@ -29,18 +52,39 @@ public class NeuroMesh {
     }
 
     public NeuroMesh(double pruneThreshold, int maxNodes) {
+        this(pruneThreshold, maxNodes, 1, 1);
+    }
+
+    /**
+     * Shard constructor: ids are issued as firstId, firstId+idStride, ... so that several
+     * meshes can share one id space without collisions (see ShardedNeuroMesh).
+     */
+    NeuroMesh(double pruneThreshold, int maxNodes, long firstId, long idStride) {
+        this(pruneThreshold, maxNodes, firstId, idStride, false);
+    }
+
+    /** With {@code readOnly} only the package-private apply path can change the mesh. */
+    NeuroMesh(double pruneThreshold, int maxNodes, long firstId, long idStride, boolean readOnly) {
+        this.readOnly = readOnly;
+        this.idGen = new AtomicLong(firstId);
+        this.idStride = Math.max(1, idStride);
         this.pruneThreshold = pruneThreshold;
         this.maxNodes = Math.max(16, maxNodes);
         LOG.info(() -> "NeuroMesh initialized pruneThreshold=" + pruneThreshold + " maxNodes=" + maxNodes);
     }
 
     public synchronized Node createNode(String key, double activation) {
+        checkWritable();
         try {
-            long id = idGen.getAndIncrement();
+            long id = idGen.getAndAdd(idStride);
             Node n = new Node(id, key);
             n.activation = activation;
             nodes.put(id, n);
+            NODES_CREATED.increment();
+            NODES.increment();
+            if (listener != null) listener.nodeCreated(id, key, activation);
             enforceMaxNodes();
+            if (listener != null) listener.endOfBatch();
             return n;
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "createNode failed", e);
@@ -59,13 +103,23 @@ public class NeuroMesh {
     }
 
     public synchronized void addEdge(long fromId, long toId, double weight) {
+        checkWritable();
         try {
             Node f = nodes.get(fromId);
             if (f == null || !nodes.containsKey(toId)) {
                 LOG.warning("addEdge: missing node(s) from=" + fromId + " to=" + toId);
                 return;
             }
+            int before = f.edges.size();
             f.edges.merge(toId, Math.max(0.0, weight), Double::sum);
+            if (f.edges.size() > before) {
+                edgeCount++;
+                EDGES.increment();
+            }
+            if (listener != null) {
+                listener.edgeSet(fromId, toId, f.edges.get(toId));
+                listener.endOfBatch();
+            }
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "addEdge failed", e);
             throw e;
@@ -73,34 +127,118 @@ public class NeuroMesh {
     }
 
     public synchronized void propagate(double decay, int steps) {
+        checkWritable();
+        NmarEvents.MeshOperation ev = NmarEvents.meshOperation();
+        long t0 = System.nanoTime();
         try {
+            Set<Long> touched = listener != null ? new HashSet<>() : null;
             for (int s=0; s<steps; s++) {
-                Map<Long, Double> incoming = new HashMap<>();
-                for (Node n : nodes.values()) {
-                    for (Map.Entry<Long, Double> e : n.edges.entrySet()) {
-                        incoming.merge(e.getKey(), n.activation * e.getValue(), Double::sum);
-                    }
-                }
-                for (Map.Entry<Long, Double> inc : incoming.entrySet()) {
-                    Node tgt = nodes.get(inc.getKey());
-                    if (tgt != null) tgt.activation = tgt.activation * (1.0 - decay) + inc.getValue();
-                }
+                Map<Long, Double> incoming = collectIncoming();
+                if (touched != null) touched.addAll(incoming.keySet());
+                applyIncoming(incoming, decay);
                 if (s % 5 == 0) prune();
             }
+            if (touched != null) {
+                // one batch per propagate: the prune removals above, then the resulting activations
+                for (Long id : touched) {
+                    Node n = nodes.get(id);
+                    if (n != null) listener.activationSet(id, n.activation);
+                }
+                listener.endOfBatch();
+            }
+            PROPAGATE_TIME.record(System.nanoTime() - t0);
+            if (ev != null) ev.finish("propagate", nodes.size(), edgeCount, 0);
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "propagate failed", e);
             throw e;
         }
     }
 
+    /**
+     * Activations after {@code steps} propagation steps, computed on a copy: nothing in the
+     * mesh changes and nothing is pruned. The read-side counterpart of propagate, e.g. on a
+     * replica.
+     */
+    public synchronized Map<Long, Double> propagatedActivations(double decay, int steps) {
+        Map<Long, Double> act = new HashMap<>();
+        for (Node n : nodes.values()) act.put(n.id, n.activation);
+        for (int s=0; s<steps; s++) {
+            Map<Long, Double> incoming = new HashMap<>();
+            for (Node n : nodes.values()) {
+                double a = act.get(n.id);
+                for (Map.Entry<Long, Double> e : n.edges.entrySet()) incoming.merge(e.getKey(), a * e.getValue(), Double::sum);
+            }
+            for (Map.Entry<Long, Double> inc : incoming.entrySet()) {
+                act.computeIfPresent(inc.getKey(), (id, a) -> a * (1.0 - decay) + inc.getValue());
+            }
+        }
+        return act;
+    }
+
+    private void checkWritable() {
+        if (readOnly) throw new IllegalStateException("replica mesh is read-only; mutate the writer's mesh");
+    }
+
+    synchronized boolean contains(long id) {
+        return nodes.containsKey(id);
+    }
+
+    synchronized double activationOf(long id) {
+        Node n = nodes.get(id);
+        return n == null ? 0.0 : n.activation;
+    }
+
+    /** First half of a propagation step: activation flowing along local edges, keyed by target id. */
+    synchronized Map<Long, Double> collectIncoming() {
+        Map<Long, Double> incoming = new HashMap<>();
+        for (Node n : nodes.values()) {
+            for (Map.Entry<Long, Double> e : n.edges.entrySet()) {
+                incoming.merge(e.getKey(), n.activation * e.getValue(), Double::sum);
+            }
+        }
+        return incoming;
+    }
+
+    /** Second half of a propagation step: decays and accumulates the incoming activation. */
+    synchronized void applyIncoming(Map<Long, Double> incoming, double decay) {
+        for (Map.Entry<Long, Double> inc : incoming.entrySet()) {
+            Node tgt = nodes.get(inc.getKey());
+            if (tgt != null) tgt.activation = tgt.activation * (1.0 - decay) + inc.getValue();
+        }
+    }
+
     private synchronized void prune() {
+        prune(Collections.emptySet());
+    }
+
+    /** Prunes weak edges and idle nodes, keeping nodes in {@code retain} (e.g. with edges held outside this mesh). */
+    synchronized void prune(Set<Long> retain) {
+        NmarEvents.MeshOperation ev = NmarEvents.meshOperation();
+        long t0 = System.nanoTime();
         try {
             List<Long> removeNodes = new ArrayList<>();
+            long removedEdges = 0;
             for (Node n : nodes.values()) {
-                n.edges.entrySet().removeIf(en -> en.getValue() < pruneThreshold);
-                if (n.activation < pruneThreshold && n.edges.isEmpty()) removeNodes.add(n.id);
+                for (Iterator<Map.Entry<Long, Double>> it = n.edges.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<Long, Double> en = it.next();
+                    if (en.getValue() >= pruneThreshold) continue;
+                    if (listener != null) listener.edgeRemoved(n.id, en.getKey());
+                    it.remove();
+                    removedEdges++;
+                }
+                if (n.activation < pruneThreshold && n.edges.isEmpty() && !retain.contains(n.id)) removeNodes.add(n.id);
             }
-            for (Long id : removeNodes) nodes.remove(id);
+            for (Long id : removeNodes) {
+                nodes.remove(id);
+                if (listener != null) listener.nodeRemoved(id);
+            }
+            edgeCount -= removedEdges;
+            EDGES.add(-removedEdges);
+            EDGES_PRUNED.add(removedEdges);
+            NODES.add(-removeNodes.size());
+            NODES_PRUNED.add(removeNodes.size());
+            PRUNE_TIME.record(System.nanoTime() - t0);
+            if (ev != null) ev.finish("prune", nodes.size(), edgeCount, removeNodes.size());
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "prune failed", e);
             throw e;
@@ -108,19 +246,127 @@ public class NeuroMesh {
     }
 
     private synchronized void enforceMaxNodes() {
-        if (nodes.size() <= maxNodes) return;
-        List<Node> list = new ArrayList<>(nodes.values());
+        evictLowest(Math.min(nodes.size() - maxNodes, EVICTION_BATCH));
+    }
+
+    /** Evicts up to {@code batch} nodes above maxNodes; returns how many were removed. */
+    public synchronized int trimToCapacity(int batch) {
+        checkWritable();
+        int n = evictLowest(Math.min(nodes.size() - maxNodes, Math.max(1, batch)));
+        if (n > 0 && listener != null) listener.endOfBatch();
+        return n;
+    }
+
+    public void setMaxNodes(int maxNodes) {
+        checkWritable();
+        this.maxNodes = Math.max(16, maxNodes);
+    }
+
+    public int maxNodes() { return maxNodes; }
+
+    public synchronized int nodeCount() { return nodes.size(); }
+
+    public synchronized long edgeCount() { return edgeCount; }
+
+    /** Removes the {@code count} lowest-activation nodes, found with a bounded max-heap. */
+    private int evictLowest(int count) {
+        if (count <= 0) return 0;
+        NmarEvents.MeshOperation ev = NmarEvents.meshOperation();
+        PriorityQueue<Node> lowest = new PriorityQueue<>(count, Comparator.comparingDouble((Node a) -> a.activation).reversed());
+        for (Node n : nodes.values()) {
+            if (lowest.size() < count) lowest.add(n);
+            else if (n.activation < lowest.peek().activation) {
+                lowest.poll();
+                lowest.add(n);
+            }
+        }
+        List<Node> list = new ArrayList<>(lowest);
         list.sort(Comparator.comparingDouble(a -> a.activation));
-        while (nodes.size() > maxNodes) {
-            Node rem = list.remove(0);
+        for (Node rem : list) {
             nodes.remove(rem.id);
+            edgeCount -= rem.edges.size();
+            EDGES.add(-rem.edges.size());
+            EDGES_PRUNED.add(rem.edges.size());
+            NODES.add(-1);
+            NODES_EVICTED.increment();
+            if (listener != null) listener.nodeRemoved(rem.id);
             LOG.fine(() -> "enforceMaxNodes removed " + rem.id);
         }
+        if (ev != null) ev.finish("evict", nodes.size(), edgeCount, list.size());
+        return list.size();
+    }
+
+    /**
+     * Streams every mutation of this mesh to {@code l} (null detaches). The listener first
+     * receives reset() and the current nodes and edges as one batch, then one batch per
+     * createNode, addEdge and propagate call, all under the mesh lock. Meshes driven by
+     * ShardedNeuroMesh prune outside propagate, so listeners are meant for standalone meshes.
+     */
+    public synchronized void setMutationListener(MeshMutationListener l) {
+        checkWritable();
+        if (l != null) {
+            l.reset();
+            for (Node n : nodes.values()) l.nodeCreated(n.id, n.key, n.activation);
+            for (Node n : nodes.values()) for (Map.Entry<Long, Double> e : n.edges.entrySet()) l.edgeSet(n.id, e.getKey(), e.getValue());
+            l.endOfBatch();
+        }
+        this.listener = l;
+    }
+
+    // Replica apply path (see MeshReplica): mirrors the writer's mutations verbatim,
+    // without id allocation, maxNodes enforcement or pruning of its own.
+
+    synchronized void applyReset() {
+        NODES.add(-nodes.size());
+        EDGES.add(-edgeCount);
+        nodes.clear();
+        edgeCount = 0;
+    }
+
+    synchronized void applyCreate(long id, String key, double activation) {
+        Node n = nodes.get(id);
+        if (n == null) {
+            n = new Node(id, key);
+            nodes.put(id, n);
+            NODES.increment();
+        }
+        n.activation = activation;
+    }
+
+    synchronized void applyEdge(long fromId, long toId, double weight) {
+        Node f = nodes.get(fromId);
+        if (f == null) return;
+        if (f.edges.put(toId, weight) == null) {
+            edgeCount++;
+            EDGES.increment();
+        }
+    }
+
+    synchronized void applyActivation(long id, double activation) {
+        Node n = nodes.get(id);
+        if (n != null) n.activation = activation;
+    }
+
+    synchronized void applyRemove(long id) {
+        Node n = nodes.remove(id);
+        if (n == null) return;
+        edgeCount -= n.edges.size();
+        EDGES.add(-n.edges.size());
+        NODES.add(-1);
+    }
+
+    synchronized void applyEdgeRemove(long fromId, long toId) {
+        Node f = nodes.get(fromId);
+        if (f != null && f.edges.remove(toId) != null) {
+            edgeCount--;
+            EDGES.add(-1);
+        }
     }
 
     public synchronized Map<String,Object> snapshot() {
         Map<String,Object> out = new HashMap<>();
         out.put("nodeCount", nodes.size());
+        out.put("edgeCount", edgeCount);
         return out;
     }
 }
@@ -0,0 +1,271 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.core;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ShardedNeuroMesh - hash-partitions nodes by key across independent NeuroMesh shards.
+ * Each shard has its own monitor, node cap and single-threaded executor. Point operations
+ * (createNode, getNodeByKey, getOrCreate, addEdge) run on the caller's thread under the
+ * owning shard's monitor, so callers touching different shards never contend; only bulk
+ * work (batched getOrCreate, propagation, pruning) is handed to the shard executors, one
+ * task per shard in parallel. Shard state is therefore not confined to its executor thread.
+ * Edges whose endpoints live in different shards are held as boundary edges by the
+ * source shard and their activation is exchanged in bulk once per propagation step.
+ * Pruning follows single-mesh semantics: weak edges go, a removed node takes its own
+ * edges with it, and edges into a node pruned on another shard stay behind as inert
+ * dangling edges, exactly as edges into a pruned node do within one NeuroMesh.
+ * Node ids encode the owning shard, and {@link #shardFor(String, int)} is stable across
+ * JVMs, so separate processes can agree on key ownership when running one shard each.
+ */
+public class ShardedNeuroMesh implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(ShardedNeuroMesh.class.getName());
+    private final NeuroMesh[] shards;
+    private final ExecutorService[] executors;
+    // per source shard: fromId -> (toId -> weight) for edges crossing into another shard
+    private final List<Map<Long, Map<Long, Double>>> boundary = new ArrayList<>();
+    private final double pruneThreshold;
+    // point operations share the read side; propagation takes the write side so a step sees a stable graph
+    private final ReentrantReadWriteLock stepLock = new ReentrantReadWriteLock();
+
+    public ShardedNeuroMesh(double pruneThreshold, int maxNodes, int shardCount) {
+        int n = Math.max(1, shardCount);
+        this.pruneThreshold = pruneThreshold;
+        this.shards = new NeuroMesh[n];
+        this.executors = new ExecutorService[n];
+        int perShard = (Math.max(16, maxNodes) + n - 1) / n;
+        for (int i=0;i<n;i++) {
+            final int idx = i;
+            shards[i] = new NeuroMesh(pruneThreshold, perShard, i + 1, n);
+            executors[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "nmar-mesh-shard-" + idx);
+                t.setDaemon(true);
+                return t;
+            });
+            boundary.add(new HashMap<>());
+        }
+        LOG.info(() -> "ShardedNeuroMesh initialized shards=" + n + " maxNodesPerShard=" + perShard);
+    }
+
+    /** Stable key to shard mapping; String.hashCode is specified, so every JVM agrees on it. */
+    public static int shardFor(String key, int shardCount) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 15), shardCount);
+    }
+
+    public int shardCount() { return shards.length; }
+
+    public int shardOf(String key) { return shardFor(key, shards.length); }
+
+    public int shardOfId(long id) { return (int) Math.floorMod(id - 1, (long) shards.length); }
+
+    public NeuroMesh shard(int index) { return shards[index]; }
+
+    public NeuroMesh.Node createNode(String key, double activation) {
+        stepLock.readLock().lock();
+        try {
+            return shards[shardOf(key)].createNode(key, activation);
+        } finally {
+            stepLock.readLock().unlock();
+        }
+    }
+
+    public NeuroMesh.Node getNodeByKey(String key) {
+        stepLock.readLock().lock();
+        try {
+            return shards[shardOf(key)].getNodeByKey(key);
+        } finally {
+            stepLock.readLock().unlock();
+        }
+    }
+
+    public NeuroMesh.Node getOrCreate(String key, double activation) {
+        stepLock.readLock().lock();
+        try {
+            return shards[shardOf(key)].getOrCreate(key, activation);
+        } finally {
+            stepLock.readLock().unlock();
+        }
+    }
+
+    /** Batched getOrCreate: keys are grouped by shard and resolved on the shard executors in parallel. */
+    public List<NeuroMesh.Node> getOrCreateAll(List<String> keys, double activation) {
+        List<List<Integer>> byShard = new ArrayList<>();
+        for (int i=0;i<shards.length;i++) byShard.add(new ArrayList<>());
+        for (int i=0;i<keys.size();i++) byShard.get(shardOf(keys.get(i))).add(i);
+        NeuroMesh.Node[] out = new NeuroMesh.Node[keys.size()];
+        stepLock.readLock().lock();
+        try {
+            runOnShards(i -> {
+                for (int pos : byShard.get(i)) out[pos] = shards[i].getOrCreate(keys.get(pos), activation);
+                return null;
+            });
+        } finally {
+            stepLock.readLock().unlock();
+        }
+        return Arrays.asList(out);
+    }
+
+    public void addEdge(long fromId, long toId, double weight) {
+        int sf = shardOfId(fromId);
+        int st = shardOfId(toId);
+        stepLock.readLock().lock();
+        try {
+            if (sf == st) {
+                shards[sf].addEdge(fromId, toId, weight);
+                return;
+            }
+            if (!shards[sf].contains(fromId) || !shards[st].contains(toId)) {
+                LOG.warning("addEdge: missing node(s) from=" + fromId + " to=" + toId);
+                return;
+            }
+            Map<Long, Map<Long, Double>> b = boundary.get(sf);
+            synchronized (b) {
+                b.computeIfAbsent(fromId, k -> new HashMap<>()).merge(toId, Math.max(0.0, weight), Double::sum);
+            }
+        } finally {
+            stepLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bulk-synchronous propagation: every shard computes its local incoming activation and
+     * its outbound boundary contributions from the same pre-step state, contributions are
+     * exchanged per destination shard, then all shards apply their incoming map in parallel.
+     */
+    public void propagate(double decay, int steps) {
+        stepLock.writeLock().lock();
+        long t0 = System.nanoTime();
+        try {
+            for (int s=0; s<steps; s++) {
+                List<List<Map<Long, Double>>> collected = runOnShards(this::collectStep);
+                List<Map<Long, Double>> incoming = new ArrayList<>(collected.get(0));
+                for (int src=1; src<collected.size(); src++) {
+                    List<Map<Long, Double>> part = collected.get(src);
+                    for (int d=0; d<part.size(); d++) {
+                        Map<Long, Double> p = part.get(d);
+                        if (p == null) continue;
+                        if (incoming.get(d) == null) { incoming.set(d, p); continue; }
+                        for (Map.Entry<Long, Double> e : p.entrySet()) incoming.get(d).merge(e.getKey(), e.getValue(), Double::sum);
+                    }
+                }
+                runOnShards(i -> {
+                    if (incoming.get(i) != null) shards[i].applyIncoming(incoming.get(i), decay);
+                    return null;
+                });
+                if (s % 5 == 0) prune();
+            }
+            NeuroMesh.PROPAGATE_TIME.record(System.nanoTime() - t0);
+        } catch (RuntimeException e) {
+            LOG.log(Level.SEVERE, "propagate failed", e);
+            throw e;
+        } finally {
+            stepLock.writeLock().unlock();
+        }
+    }
+
+    /** Returns, per destination shard (null where nothing is sent), the activation shard {@code i} sends there this step. */
+    private List<Map<Long, Double>> collectStep(int i) {
+        List<Map<Long, Double>> out = new ArrayList<>(Collections.nCopies(shards.length, null));
+        out.set(i, shards[i].collectIncoming());
+        Map<Long, Map<Long, Double>> b = boundary.get(i);
+        synchronized (b) {
+            for (Map.Entry<Long, Map<Long, Double>> from : b.entrySet()) {
+                double a = shards[i].activationOf(from.getKey());
+                for (Map.Entry<Long, Double> e : from.getValue().entrySet()) {
+                    int d = shardOfId(e.getKey());
+                    if (out.get(d) == null) out.set(d, new HashMap<>());
+                    out.get(d).merge(e.getKey(), a * e.getValue(), Double::sum);
+                }
+            }
+        }
+        return out;
+    }
+
+    private void prune() {
+        // weak boundary edges go first, and nodes still feeding other shards are kept alive
+        runOnShards(i -> {
+            Map<Long, Map<Long, Double>> b = boundary.get(i);
+            Set<Long> retain;
+            synchronized (b) {
+                for (Map<Long, Double> edges : b.values()) edges.values().removeIf(w -> w < pruneThreshold);
+                b.values().removeIf(Map::isEmpty);
+                retain = new HashSet<>(b.keySet());
+            }
+            shards[i].prune(retain);
+            return null;
+        });
+        // then drop boundary edges whose source was evicted; edges into removed targets dangle, as in NeuroMesh
+        runOnShards(i -> {
+            Map<Long, Map<Long, Double>> b = boundary.get(i);
+            synchronized (b) {
+                b.keySet().removeIf(from -> !shards[i].contains(from));
+            }
+            return null;
+        });
+    }
+
+    private interface ShardTask<T> { T run(int shard); }
+
+    private <T> List<T> runOnShards(ShardTask<T> task) {
+        List<Future<T>> futures = new ArrayList<>(shards.length);
+        for (int i=0;i<shards.length;i++) {
+            final int idx = i;
+            futures.add(executors[i].submit(() -> task.run(idx)));
+        }
+        List<T> out = new ArrayList<>(shards.length);
+        try {
+            for (Future<T> f : futures) out.add(f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof RuntimeException) throw (RuntimeException) c;
+            throw new RuntimeException(c);
+        }
+        return out;
+    }
+
+    public Map<String,Object> snapshot() {
+        Map<String,Object> out = new HashMap<>();
+        List<Object> perShard = new ArrayList<>();
+        int total = 0;
+        long shardEdges = 0;
+        int boundaryEdges = 0;
+        for (int i=0;i<shards.length;i++) {
+            Map<String,Object> shard = shards[i].snapshot();
+            int c = (Integer) shard.get("nodeCount");
+            perShard.add(c);
+            total += c;
+            shardEdges += ((Number) shard.get("edgeCount")).longValue();
+            Map<Long, Map<Long, Double>> b = boundary.get(i);
+            synchronized (b) {
+                for (Map<Long, Double> edges : b.values()) boundaryEdges += edges.size();
+            }
+        }
+        out.put("nodeCount", total);
+        out.put("edgeCount", shardEdges + boundaryEdges);
+        out.put("shardCount", shards.length);
+        out.put("shardNodeCounts", perShard);
+        out.put("boundaryEdgeCount", boundaryEdges);
+        return out;
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService ex : executors) ex.shutdown();
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
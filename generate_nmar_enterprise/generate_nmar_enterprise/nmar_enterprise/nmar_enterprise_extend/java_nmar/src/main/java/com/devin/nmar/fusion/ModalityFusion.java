@@ -3,11 +3,16 @@ Copyright © 2025 Devin B. Royal. All Rights Reserved.
 */
 package com.devin.nmar.fusion;
 
+import com.devin.nmar.metrics.NmarEvents;
+
+import java.nio.FloatBuffer;
 import java.util.*;
 
 /**
  * ModalityFusion - deterministic placeholder encoders and attention fusion.
  * Replace encoders with real model inference in production.
+ * Calls are too cheap for a per-call timer; their latency is covered by the pipeline's
+ * encode and fuse batch timers and the guarded JFR events.
  */
 public class ModalityFusion {
     private final int dim;
@@ -15,28 +20,46 @@ public class ModalityFusion {
     public ModalityFusion(int dim) { this.dim = Math.max(16, dim); }
 
     public Embedding encodeText(String text) {
+        NmarEvents.Encode ev = NmarEvents.encode();
         Embedding e = new Embedding(dim);
         int seed = text.hashCode();
         Random r = new Random(seed);
         for (int i=0;i<dim;i++) e.v[i] = r.nextDouble()*2 - 1;
-        return e;
+        return encoded(e, "text", ev);
     }
 
     public Embedding encodeImage(byte[] bytes, String meta) {
+        NmarEvents.Encode ev = NmarEvents.encode();
         Embedding e = new Embedding(dim);
         int seed = Arrays.hashCode(bytes) ^ (meta==null?0:meta.hashCode());
         Random r = new Random(seed);
         for (int i=0;i<dim;i++) e.v[i] = r.nextDouble()*2 - 1;
-        return e;
+        return encoded(e, "image", ev);
     }
 
     public Embedding encodeSensor(double[] s) {
+        NmarEvents.Encode ev = NmarEvents.encode();
         Embedding e = new Embedding(dim);
         for (int i=0;i<dim;i++) e.v[i] = (i < s.length ? s[i] : 0.0) * 0.1;
+        return encoded(e, "sensor", ev);
+    }
+
+    /** As encodeSensor(double[]), reading the values in place from {@code s} without consuming it. */
+    public Embedding encodeSensor(FloatBuffer s) {
+        NmarEvents.Encode ev = NmarEvents.encode();
+        Embedding e = new Embedding(dim);
+        int base = s.position(), n = Math.min(dim, s.remaining());
+        for (int i=0;i<n;i++) e.v[i] = s.get(base + i) * 0.1;
+        return encoded(e, "sensor", ev);
+    }
+
+    private Embedding encoded(Embedding e, String modality, NmarEvents.Encode ev) {
+        if (ev != null) ev.finish(modality, dim);
         return e;
     }
 
     public Embedding fuse(Map<String,Embedding> modalities) {
+        NmarEvents.Fusion ev = NmarEvents.fusion();
         Embedding out = new Embedding(dim);
         double total = 0.0;
         Map<String,Double> scores = new HashMap<>();
@@ -53,6 +76,7 @@ public class ModalityFusion {
             double[] vec = me.getValue().v;
             for (int i=0;i<dim;i++) out.v[i] += vec[i] * w;
         }
+        if (ev != null) ev.finish(modalities.size(), dim);
         return out;
     }
 }
@@ -3,8 +3,15 @@ Copyright © 2025 Devin B. Royal. All Rights Reserved.
 */
 package com.devin.nmar.grpc;
 
+import com.devin.nmar.admission.Deadline;
+import com.devin.nmar.admission.DeadlineExceededException;
+import com.devin.nmar.metrics.LatencyHistogram;
+import com.devin.nmar.metrics.Metrics;
+import com.devin.nmar.metrics.NmarEvents;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -14,6 +21,10 @@ import java.util.logging.Logger;
  */
 public class ModelServiceGrpcClient {
     private static final Logger LOG = Logger.getLogger(ModelServiceGrpcClient.class.getName());
+    private static final LatencyHistogram CALL_TIME = Metrics.timer("nmar_embedding_client_seconds", "Model service getEmbedding latency");
+    private static final Metrics.Counter CALL_ERRORS = Metrics.counter("nmar_embedding_client_errors", "Failed getEmbedding calls");
+    private static final Metrics.Counter DEADLINE_EXCEEDED = Metrics.counter("nmar_embedding_client_deadline_exceeded", "getEmbedding calls cut off by their deadline");
+    private static final long SIMULATED_LATENCY_MILLIS = 30;
     private final String host;
     private final int port;
     private final String apiKey;
@@ -28,9 +39,37 @@ public class ModelServiceGrpcClient {
      * Simulated gRPC call to model server. In production, replace with actual gRPC stub invocation.
      */
     public List<Float> getEmbedding(String modality, float[] input) {
+        return getEmbedding(modality, input, Deadline.none());
+    }
+
+    /**
+     * As getEmbedding, bounded by the caller's deadline the way a gRPC deadline bounds
+     * the call: an already expired deadline fails before any network work, and a call
+     * still running when the deadline passes is abandoned with DeadlineExceededException.
+     */
+    public List<Float> getEmbedding(String modality, float[] input, Deadline deadline) {
+        if (deadline.expired()) {
+            DEADLINE_EXCEEDED.increment();
+            throw new DeadlineExceededException("getEmbedding");
+        }
+        NmarEvents.EmbeddingCall ev = NmarEvents.embeddingCall();
+        long t0 = System.nanoTime();
+        List<Float> embed = callModelService(modality, input, deadline);
+        CALL_TIME.record(System.nanoTime() - t0);
+        if (ev != null) ev.finish(modality, embed.size());
+        return embed;
+    }
+
+    private List<Float> callModelService(String modality, float[] input, Deadline deadline) {
         try {
-            // Simulate network call latency
-            Thread.sleep(30);
+            // Simulate network call latency, cut short by the deadline
+            long budget = deadline.remainingMillis();
+            if (budget < SIMULATED_LATENCY_MILLIS) {
+                TimeUnit.MILLISECONDS.sleep(budget);
+                DEADLINE_EXCEEDED.increment();
+                throw new DeadlineExceededException("getEmbedding reply");
+            }
+            Thread.sleep(SIMULATED_LATENCY_MILLIS);
             // Simple deterministic embedding: hash-based pseudo-random vector (safe simulation)
             List<Float> embed = new ArrayList<>();
             int dim = 128;
@@ -40,10 +79,14 @@ public class ModelServiceGrpcClient {
                 embed.add((float)(r.nextGaussian() * 0.5));
             }
             return embed;
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (InterruptedException e) {
+            CALL_ERRORS.increment();
             Thread.currentThread().interrupt();
             throw new RuntimeException("Interrupted", e);
         } catch (Exception ex) {
+            CALL_ERRORS.increment();
             LOG.warning("getEmbedding simulation failed: " + ex.getMessage());
             return new ArrayList<>();
         }
@@ -4,6 +4,10 @@ Copyright © 2025 Devin B. Royal. All Rights Reserved.
 package com.devin.nmar.learning;
 
 import com.devin.nmar.core.NeuroMesh;
+import com.devin.nmar.metrics.LatencyHistogram;
+import com.devin.nmar.metrics.Metrics;
+import com.devin.nmar.metrics.NmarEvents;
+
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -12,6 +16,7 @@ import java.util.logging.Logger;
  */
 public class AdaptiveLearner {
     private static final Logger LOG = Logger.getLogger(AdaptiveLearner.class.getName());
+    private static final LatencyHistogram APPLY_TIME = Metrics.timer("nmar_learner_apply_seconds", "AdaptiveLearner.apply latency");
     private final NeuroMesh mesh;
     private final Deque<double[]> replay = new ArrayDeque<>();
     private final int maxReplay;
@@ -22,6 +27,8 @@ public class AdaptiveLearner {
     }
 
     public synchronized void apply(List<String> activeKeys, double reward) {
+        NmarEvents.Learn ev = NmarEvents.learn();
+        long t0 = System.nanoTime();
         try {
             List<NeuroMesh.Node> nodes = new ArrayList<>();
             for (String k : activeKeys) nodes.add(mesh.getOrCreate(k, 0.1));
@@ -31,6 +38,8 @@ public class AdaptiveLearner {
             if (replay.size() >= maxReplay) replay.removeFirst();
             replay.addLast(trace);
             if (Math.random() < 0.05) replayApply();
+            APPLY_TIME.record(System.nanoTime() - t0);
+            if (ev != null) ev.finish(activeKeys.size(), reward);
         } catch (Exception e) {
             LOG.warning("apply failed: " + e.getMessage());
             throw e;
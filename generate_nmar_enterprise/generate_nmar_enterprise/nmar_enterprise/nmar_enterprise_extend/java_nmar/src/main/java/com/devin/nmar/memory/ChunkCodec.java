@@ -0,0 +1,97 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * ChunkCodec - binary layout of a Chunk shared by the write-ahead log and cold segments.
+ * Body: id msb, id lsb, relevance, created millis, accesses, key length, key UTF-8,
+ * payload length, payload UTF-8. Framed records are [int length][int crc32][body].
+ */
+final class ChunkCodec {
+    static final int FRAME_HEADER = 8;
+    // offsets inside a body
+    static final int ID_MSB = 0, ID_LSB = 8, RELEVANCE = 16, CREATED = 24, ACCESSES = 32, KEY_LEN = 36;
+
+    private ChunkCodec() {}
+
+    static byte[] encode(MemoryAnchors.Chunk c) {
+        byte[] k = c.key.getBytes(StandardCharsets.UTF_8);
+        byte[] p = c.payload.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = ByteBuffer.allocate(KEY_LEN + 4 + k.length + 4 + p.length);
+        b.putLong(c.id.getMostSignificantBits());
+        b.putLong(c.id.getLeastSignificantBits());
+        b.putDouble(c.relevance);
+        b.putLong(c.created.toEpochMilli());
+        b.putInt(c.accesses);
+        b.putInt(k.length).put(k);
+        b.putInt(p.length).put(p);
+        return b.array();
+    }
+
+    /** Decodes a body starting at {@code pos} using absolute reads. */
+    static MemoryAnchors.Chunk decode(ByteBuffer b, int pos) {
+        UUID id = new UUID(b.getLong(pos + ID_MSB), b.getLong(pos + ID_LSB));
+        double relevance = b.getDouble(pos + RELEVANCE);
+        Instant created = Instant.ofEpochMilli(b.getLong(pos + CREATED));
+        int accesses = b.getInt(pos + ACCESSES);
+        int kLen = b.getInt(pos + KEY_LEN);
+        String key = string(b, pos + KEY_LEN + 4, kLen);
+        int pLen = b.getInt(pos + KEY_LEN + 4 + kLen);
+        String payload = string(b, pos + KEY_LEN + 8 + kLen, pLen);
+        return new MemoryAnchors.Chunk(id, key, payload, relevance, created, accesses);
+    }
+
+    /** True if the UTF-8 needle occurs in the key or payload of the body at {@code pos}. */
+    static boolean matches(ByteBuffer b, int pos, byte[] needle) {
+        int kLen = b.getInt(pos + KEY_LEN);
+        int kStart = pos + KEY_LEN + 4;
+        if (indexOf(b, kStart, kLen, needle)) return true;
+        int pLen = b.getInt(kStart + kLen);
+        return indexOf(b, kStart + kLen + 4, pLen, needle);
+    }
+
+    // byte-wise substring search; valid for UTF-8 because no encoded character is a prefix of another
+    private static boolean indexOf(ByteBuffer b, int start, int len, byte[] needle) {
+        if (needle.length == 0) return true;
+        byte first = needle[0];
+        int last = start + len - needle.length;
+        outer:
+        for (int i=start; i<=last; i++) {
+            if (b.get(i) != first) continue;
+            for (int j=1; j<needle.length; j++) if (b.get(i + j) != needle[j]) continue outer;
+            return true;
+        }
+        return false;
+    }
+
+    private static String string(ByteBuffer b, int pos, int len) {
+        byte[] out = new byte[len];
+        b.get(pos, out);
+        return new String(out, StandardCharsets.UTF_8);
+    }
+
+    static ByteBuffer frame(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer f = ByteBuffer.allocate(FRAME_HEADER + body.length);
+        f.putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+        return f;
+    }
+
+    static boolean crcMatches(ByteBuffer b, int bodyPos, int len, int expected) {
+        CRC32 crc = new CRC32();
+        crc.update(b.duplicate().position(bodyPos).limit(bodyPos + len));
+        return (int) crc.getValue() == expected;
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
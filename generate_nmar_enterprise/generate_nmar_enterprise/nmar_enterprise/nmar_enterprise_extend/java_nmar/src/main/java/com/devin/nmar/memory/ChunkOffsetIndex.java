@@ -0,0 +1,107 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.memory;
+
+/**
+ * ChunkOffsetIndex - open-addressing map from chunk id to a packed cold-tier location
+ * ((segment &lt;&lt; 40) | offset). Three parallel long arrays, 24 bytes per slot, no
+ * per-entry objects. It lives on the heap: at the 0.3-0.6 load factor that is 40-80
+ * bytes per live cold chunk, e.g. 4-8 GB for 100M chunks or 12-24 GB for 300M, and a
+ * rehash briefly needs the old and the new arrays together. Size the heap for the cold
+ * tier it must index. Not thread-safe; ColdSegmentStore guards it.
+ */
+final class ChunkOffsetIndex {
+    static final long ABSENT = -1;
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+
+    private long[] msb;
+    private long[] lsb;
+    private long[] loc;
+    private int size;
+    private int used;
+
+    ChunkOffsetIndex(int initialCapacity) {
+        int cap = Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1;
+        allocate(cap);
+    }
+
+    static long pack(int segment, long offset) { return ((long) segment << 40) | offset; }
+
+    static int segmentOf(long packed) { return (int) (packed >>> 40); }
+
+    static long offsetOf(long packed) { return packed & ((1L << 40) - 1); }
+
+    int size() { return size; }
+
+    long get(long hi, long lo) {
+        int mask = loc.length - 1;
+        for (int i = slot(hi, lo) & mask; ; i = (i + 1) & mask) {
+            if (loc[i] == EMPTY) return ABSENT;
+            if (loc[i] != TOMBSTONE && msb[i] == hi && lsb[i] == lo) return loc[i];
+        }
+    }
+
+    /** Maps the id to {@code packed}; returns the location it replaced, or ABSENT. */
+    long put(long hi, long lo, long packed) {
+        if ((used + 1) * 10L > loc.length * 6L) rehash(size * 10L > loc.length * 3L ? loc.length * 2 : loc.length);
+        int mask = loc.length - 1;
+        int firstFree = -1;
+        for (int i = slot(hi, lo) & mask; ; i = (i + 1) & mask) {
+            if (loc[i] == EMPTY) {
+                int at = firstFree >= 0 ? firstFree : i;
+                if (firstFree < 0) used++;
+                msb[at] = hi; lsb[at] = lo; loc[at] = packed;
+                size++;
+                return ABSENT;
+            }
+            if (loc[i] == TOMBSTONE) {
+                if (firstFree < 0) firstFree = i;
+            } else if (msb[i] == hi && lsb[i] == lo) {
+                long previous = loc[i];
+                loc[i] = packed;
+                return previous;
+            }
+        }
+    }
+
+    /** Removes the id; returns its location, or ABSENT if it was not present. */
+    long remove(long hi, long lo) {
+        int mask = loc.length - 1;
+        for (int i = slot(hi, lo) & mask; ; i = (i + 1) & mask) {
+            if (loc[i] == EMPTY) return ABSENT;
+            if (loc[i] != TOMBSTONE && msb[i] == hi && lsb[i] == lo) {
+                long removed = loc[i];
+                loc[i] = TOMBSTONE;
+                size--;
+                return removed;
+            }
+        }
+    }
+
+    private static int slot(long hi, long lo) {
+        long h = (hi ^ lo) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int cap) {
+        msb = new long[cap];
+        lsb = new long[cap];
+        loc = new long[cap];
+        size = 0;
+        used = 0;
+    }
+
+    private void rehash(int cap) {
+        long[] oMsb = msb, oLsb = lsb, oLoc = loc;
+        allocate(cap);
+        for (int i=0;i<oLoc.length;i++) {
+            if (oLoc[i] != EMPTY && oLoc[i] != TOMBSTONE) put(oMsb[i], oLsb[i], oLoc[i]);
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,330 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.memory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * ColdSegmentStore - append-only segment files (seg-NNNNNN.dat) holding evicted chunks as
+ * ChunkCodec frames, read back through read-only memory maps. A ChunkOffsetIndex maps each
+ * live chunk to its newest frame; older copies left behind by promotion and re-eviction
+ * are skipped on scan. Sealed segments get a sidecar .idx of (msb, lsb, offset) triples
+ * so reopening does not have to scan them; the active segment is scanned and any torn
+ * tail truncated. The directory is fsynced after a segment is created and after each
+ * sidecar rename, so neither entry can vanish in a crash after its data was forced.
+ * Only the active segment keeps a FileChannel; every segment caches its read-only mapping,
+ * which for a sealed segment outlives the closed channel, so scans never re-open or
+ * re-map a sealed file. close() drops the mappings along with the descriptors.
+ * Dead frames (copies superseded by re-eviction or promoted back to the hot tier) are
+ * counted per segment and reported by deadBytes(), but never reclaimed: compacting sealed
+ * segments is out of scope here, so a workload that promotes and re-evicts heavily grows
+ * the cold directory by the dead bytes it reports.
+ */
+final class ColdSegmentStore implements AutoCloseable {
+    private static final int MAX_SEGMENT_BYTES = 1 << 30;
+
+    private static final class Segment {
+        final int no;
+        /** Open while the segment is active; null once sealed. */
+        FileChannel ch;
+        long size;
+        /** Read-only view of [0, size); kept after sealing, remapped only while active. */
+        MappedByteBuffer map;
+        int frames;
+        int deadFrames;
+        Segment(int no, FileChannel ch, long size) { this.no=no; this.ch=ch; this.size=size; }
+    }
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final TreeMap<Integer,Segment> segments = new TreeMap<>();
+    private final ChunkOffsetIndex index = new ChunkOffsetIndex(1024);
+
+    ColdSegmentStore(Path dir, long segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = Math.max(1 << 16, Math.min(MAX_SEGMENT_BYTES, segmentBytes));
+        try {
+            Files.createDirectories(dir);
+            TreeMap<Integer,Path> found = new TreeMap<>();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "seg-*.dat")) {
+                for (Path p : ds) {
+                    String n = p.getFileName().toString();
+                    found.put(Integer.parseInt(n.substring(4, n.length() - 4)), p);
+                }
+            }
+            for (Map.Entry<Integer,Path> e : found.entrySet()) {
+                boolean active = e.getKey().equals(found.lastKey());
+                Segment s = open(e.getKey(), e.getValue());
+                segments.put(s.no, s);
+                if (active || !loadIndex(s)) recover(s, active);
+                else detach(s);
+            }
+            if (segments.isEmpty()) roll();
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    synchronized int size() { return index.size(); }
+
+    synchronized int segmentCount() { return segments.size(); }
+
+    synchronized boolean contains(UUID id) {
+        return index.get(id.getMostSignificantBits(), id.getLeastSignificantBits()) != ChunkOffsetIndex.ABSENT;
+    }
+
+    synchronized boolean remove(UUID id) {
+        long at = index.remove(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        markDead(at);
+        return at != ChunkOffsetIndex.ABSENT;
+    }
+
+    /**
+     * Bytes held by dead frames, estimated per segment as its size times its dead share of
+     * frames (frames within a segment are similar in size).
+     */
+    synchronized long deadBytes() {
+        long dead = 0;
+        for (Segment s : segments.values()) {
+            if (s.frames > 0) dead += s.size * s.deadFrames / s.frames;
+        }
+        return dead;
+    }
+
+    // points the id at its newest frame and counts the copy it replaces as dead
+    private void locate(long hi, long lo, Segment s, long offset) {
+        markDead(index.put(hi, lo, ChunkOffsetIndex.pack(s.no, offset)));
+        s.frames++;
+    }
+
+    private void markDead(long at) {
+        if (at == ChunkOffsetIndex.ABSENT) return;
+        Segment old = segments.get(ChunkOffsetIndex.segmentOf(at));
+        if (old != null) old.deadFrames++;
+    }
+
+    /** Appends the chunks to the active segment and forces it before returning. */
+    synchronized void append(List<MemoryAnchors.Chunk> chunks) {
+        if (chunks.isEmpty()) return;
+        try {
+            Segment s = segments.lastEntry().getValue();
+            for (MemoryAnchors.Chunk c : chunks) {
+                ByteBuffer f = ChunkCodec.frame(ChunkCodec.encode(c));
+                if (s.size > 0 && s.size + f.remaining() > segmentBytes) {
+                    s.ch.force(false);
+                    seal(s);
+                    s = roll();
+                }
+                long offset = s.size;
+                while (f.hasRemaining()) s.size += s.ch.write(f, s.size);
+                locate(c.id.getMostSignificantBits(), c.id.getLeastSignificantBits(), s, offset);
+            }
+            s.ch.force(false);
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    /** Ranks a cold chunk from its stored relevance, created millis and access count. */
+    interface Scorer { double score(double relevance, long createdMillis, int accesses); }
+
+    private static final class Candidate {
+        final double score;
+        final int segment;
+        final int pos;
+        Candidate(double score, int segment, int pos) { this.score=score; this.segment=segment; this.pos=pos; }
+    }
+
+    /**
+     * Adds to {@code out} the {@code limit} best-scoring live cold chunks whose key or payload
+     * contains {@code needle} (UTF-8), relevance set to their score, and returns how many
+     * matched in all. Frames are scored in place and kept in a bounded heap, so only the
+     * survivors are decoded; the lock is held for one segment at a time, not the whole scan.
+     */
+    int topMatches(byte[] needle, int limit, Scorer scorer, List<MemoryAnchors.Chunk> out) {
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Math.max(1, limit), Comparator.comparingDouble((Candidate c) -> c.score));
+        List<Integer> nos;
+        synchronized (this) { nos = new ArrayList<>(segments.keySet()); }
+        int matched = 0;
+        for (int no : nos) {
+            synchronized (this) {
+                Segment s = segments.get(no);
+                if (s == null || s.size == 0) continue;
+                ByteBuffer m = mapped(s);
+                int end = (int) s.size;
+                for (int pos = 0; pos + ChunkCodec.FRAME_HEADER <= end; ) {
+                    int len = m.getInt(pos);
+                    if (len <= 0) break;
+                    int body = pos + ChunkCodec.FRAME_HEADER;
+                    if (ChunkCodec.matches(m, body, needle) && live(m, body, no, pos)) {
+                        matched++;
+                        double score = scorer.score(m.getDouble(body + ChunkCodec.RELEVANCE),
+                            m.getLong(body + ChunkCodec.CREATED), m.getInt(body + ChunkCodec.ACCESSES));
+                        if (best.size() < limit) best.add(new Candidate(score, no, pos));
+                        else if (limit > 0 && score > best.peek().score) {
+                            best.poll();
+                            best.add(new Candidate(score, no, pos));
+                        }
+                    }
+                    pos = body + len;
+                }
+            }
+        }
+        List<Candidate> survivors = new ArrayList<>(best);
+        survivors.sort(Comparator.comparingInt((Candidate c) -> c.segment));
+        synchronized (this) {
+            int mappedNo = -1;
+            ByteBuffer m = null;
+            for (Candidate c : survivors) {
+                Segment s = segments.get(c.segment);
+                if (s == null) continue;
+                if (c.segment != mappedNo) {
+                    m = mapped(s);
+                    mappedNo = c.segment;
+                }
+                int body = c.pos + ChunkCodec.FRAME_HEADER;
+                // skip chunks promoted or re-evicted since their segment was scanned
+                if (!live(m, body, c.segment, c.pos)) continue;
+                MemoryAnchors.Chunk chunk = ChunkCodec.decode(m, body);
+                chunk.relevance = c.score;
+                out.add(chunk);
+            }
+        }
+        return matched;
+    }
+
+    private boolean live(ByteBuffer m, int body, int segment, int pos) {
+        long at = index.get(m.getLong(body + ChunkCodec.ID_MSB), m.getLong(body + ChunkCodec.ID_LSB));
+        return at == ChunkOffsetIndex.pack(segment, pos);
+    }
+
+    private ByteBuffer mapped(Segment s) {
+        try {
+            if (s.ch == null) {
+                // sealed and never mapped since: the mapping stays valid after the channel closes
+                if (s.map == null) {
+                    try (FileChannel ch = FileChannel.open(segPath(s.no), StandardOpenOption.READ)) {
+                        s.map = ch.map(FileChannel.MapMode.READ_ONLY, 0, s.size);
+                    }
+                }
+                return s.map;
+            }
+            if (s.map == null || s.map.capacity() < s.size) s.map = s.ch.map(FileChannel.MapMode.READ_ONLY, 0, s.size);
+            return s.map;
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    // closes the descriptor of a segment that will not be written again; its mapping stays cached
+    private void detach(Segment s) throws IOException {
+        if (s.ch != null) s.ch.close();
+        s.ch = null;
+    }
+
+    // drops the descriptor and the cached mapping
+    private void release(Segment s) throws IOException {
+        s.map = null;
+        detach(s);
+    }
+
+    private Path segPath(int no) {
+        return dir.resolve(String.format("seg-%06d.dat", no));
+    }
+
+    private Segment open(int no, Path p) throws IOException {
+        FileChannel ch = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(no, ch, ch.size());
+    }
+
+    private Segment roll() throws IOException {
+        int no = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Segment s = open(no, segPath(no));
+        segments.put(no, s);
+        WriteAheadLog.syncDirectory(dir);
+        return s;
+    }
+
+    // scans frames into the index; a torn or corrupt tail of the active segment is cut off
+    private void recover(Segment s, boolean active) throws IOException {
+        ByteBuffer m = mapped(s);
+        int end = (int) s.size;
+        int pos = 0;
+        while (pos + ChunkCodec.FRAME_HEADER <= end) {
+            int len = m.getInt(pos);
+            int body = pos + ChunkCodec.FRAME_HEADER;
+            if (len <= 0 || body + len > end || !ChunkCodec.crcMatches(m, body, len, m.getInt(pos + 4))) break;
+            locate(m.getLong(body + ChunkCodec.ID_MSB), m.getLong(body + ChunkCodec.ID_LSB), s, pos);
+            pos = body + len;
+        }
+        if (pos < end) {
+            s.size = pos;
+            s.map = null;
+            if (active) {
+                s.ch.truncate(pos);
+                s.ch.force(true);
+            }
+        }
+        if (!active) seal(s);
+    }
+
+    private boolean loadIndex(Segment s) throws IOException {
+        Path idx = idxPath(s);
+        if (!Files.exists(idx)) return false;
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(idx));
+        if (b.limit() % 24 != 0) return false;
+        while (b.hasRemaining()) {
+            long hi = b.getLong(), lo = b.getLong(), off = b.getLong();
+            locate(hi, lo, s, off);
+        }
+        return true;
+    }
+
+    // writes the sidecar index of a full segment: one triple per frame, in file order
+    private void seal(Segment s) throws IOException {
+        ByteBuffer m = mapped(s);
+        int end = (int) s.size;
+        ByteBuffer out = ByteBuffer.allocate(24 * 1024);
+        Path tmp = idxPath(s).resolveSibling(idxPath(s).getFileName() + ".tmp");
+        try (FileChannel t = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int pos = 0; pos + ChunkCodec.FRAME_HEADER <= end; pos += ChunkCodec.FRAME_HEADER + m.getInt(pos)) {
+                int body = pos + ChunkCodec.FRAME_HEADER;
+                out.putLong(m.getLong(body + ChunkCodec.ID_MSB)).putLong(m.getLong(body + ChunkCodec.ID_LSB)).putLong(pos);
+                if (!out.hasRemaining()) { out.flip(); while (out.hasRemaining()) t.write(out); out.clear(); }
+            }
+            out.flip();
+            while (out.hasRemaining()) t.write(out);
+            t.force(true);
+        }
+        Files.move(tmp, idxPath(s), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        WriteAheadLog.syncDirectory(dir);
+        detach(s);
+    }
+
+    private Path idxPath(Segment s) {
+        return dir.resolve(String.format("seg-%06d.idx", s.no));
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            for (Segment s : segments.values()) release(s);
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+        segments.clear();
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
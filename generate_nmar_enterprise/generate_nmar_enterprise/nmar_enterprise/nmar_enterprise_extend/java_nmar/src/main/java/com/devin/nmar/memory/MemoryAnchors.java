@@ -3,25 +3,42 @@ Copyright © 2025 Devin B. Royal. All Rights Reserved.
 */
 package com.devin.nmar.memory;
 
+import com.devin.nmar.metrics.LatencyHistogram;
+import com.devin.nmar.metrics.Metrics;
+import com.devin.nmar.metrics.NmarEvents;
+
 import java.time.Instant;
 import java.util.*;
 
 /**
  * MemoryAnchors - relevance-indexed memory with decay and consolidation.
+ * Subclasses can hook remember, consolidation and retrieval to back the heap store
+ * with another tier (see TieredMemoryAnchors).
+ * maxChunks can be changed at runtime (see CapacityController); consolidate picks its
+ * victims by partial selection. remember only clears a regular overflow, so a store
+ * above a lowered cap stops growing but is worked off by trimToCapacity(batch), which
+ * the owner (CapacityController, with its evictionBatch) calls until it returns 0.
  */
 public class MemoryAnchors {
+    private static final LatencyHistogram RETRIEVE_TIME = Metrics.timer("nmar_memory_retrieve_seconds", "MemoryAnchors.retrieve latency");
+    private static final LatencyHistogram RETRIEVE_HITS = Metrics.distribution("nmar_memory_retrieve_hits", "Chunks matched per retrieve before the limit");
+    private static final Metrics.Counter CHUNKS = Metrics.upDownCounter("nmar_memory_chunks", "Chunks held across all MemoryAnchors");
+    private static final Metrics.Counter CONSOLIDATED = Metrics.counter("nmar_memory_consolidated", "Chunks dropped by consolidate");
+
     public static class Chunk {
-        public final UUID id = UUID.randomUUID();
+        public final UUID id;
         public final String key;
         public final String payload;
         public double relevance;
         public final Instant created;
         public int accesses = 0;
-        public Chunk(String key, String payload, double relevance) { this.key=key; this.payload=payload; this.relevance=relevance; this.created = Instant.now(); }
+        public Chunk(String key, String payload, double relevance) { this(UUID.randomUUID(), key, payload, relevance, Instant.now(), 0); }
+        Chunk(UUID id, String key, String payload, double relevance, Instant created, int accesses) { this.id=id; this.key=key; this.payload=payload; this.relevance=relevance; this.created=created; this.accesses=accesses; }
     }
 
     private final Map<UUID,Chunk> store = new HashMap<>();
-    private final int maxChunks;
+    private volatile int maxChunks;
+    private long textChars;
     private final double decayRate;
 
     public MemoryAnchors(int maxChunks, double decayRate) {
@@ -32,36 +49,153 @@ public class MemoryAnchors {
     public synchronized Chunk remember(String key, String payload, double relevance) {
         Chunk c = new Chunk(key,payload,relevance);
         store.put(c.id,c);
-        if (store.size() > maxChunks) consolidate();
+        textChars += c.key.length() + c.payload.length();
+        CHUNKS.increment();
+        onRemember(c);
+        if (store.size() > maxChunks) consolidate(0);
         return c;
     }
 
-    public synchronized List<Chunk> retrieve(String q, int limit) {
+    public List<Chunk> retrieve(String q, int limit) {
+        NmarEvents.MemoryRetrieve ev = NmarEvents.memoryRetrieve();
+        long t0 = System.nanoTime();
         long now = Instant.now().toEpochMilli();
         List<Chunk> list = new ArrayList<>();
-        for (Chunk c : store.values()) {
-            if (c.key.contains(q) || c.payload.contains(q)) {
-                double ageHours = Math.max(0.0,(now - c.created.toEpochMilli())/1000.0/3600.0);
-                double freshness = Math.exp(-decayRate * ageHours);
-                double score = c.relevance * freshness + Math.log(1 + c.accesses);
-                c.relevance = score;
-                list.add(c);
+        synchronized (this) {
+            for (Chunk c : store.values()) {
+                if (c.key.contains(q) || c.payload.contains(q)) {
+                    c.relevance = score(c, now);
+                    list.add(c);
+                }
+            }
+        }
+        // the cold tier is scanned without the store lock, so remember and other retrieves proceed meanwhile
+        List<Chunk> cold = new ArrayList<>();
+        int hits = list.size() + collectColdMatches(q, now, limit, cold);
+        int stored;
+        synchronized (this) {
+            if (!cold.isEmpty()) {
+                Set<UUID> seen = new HashSet<>();
+                for (Chunk c : list) seen.add(c.id);
+                for (Chunk c : cold) {
+                    // promoted by a concurrent retrieve since the scan: use the live hot copy
+                    Chunk hot = store.get(c.id);
+                    if (hot != null) {
+                        hot.relevance = score(hot, now);
+                        c = hot;
+                    }
+                    if (seen.add(c.id)) list.add(c);
+                }
             }
+            list.sort(Comparator.comparingDouble((Chunk x) -> x.relevance).reversed());
+            if (list.size() > limit) list = list.subList(0, limit);
+            list.forEach(c -> c.accesses++);
+            onRetrieved(list);
+            stored = store.size();
         }
-        list.sort(Comparator.comparingDouble((Chunk x) -> x.relevance).reversed());
-        if (list.size() > limit) list = list.subList(0, limit);
-        list.forEach(c -> c.accesses++);
+        RETRIEVE_TIME.record(System.nanoTime() - t0);
+        RETRIEVE_HITS.record(hits);
+        if (ev != null) ev.finish(stored, hits);
         return list;
     }
 
-    private synchronized void consolidate() {
-        List<Chunk> list = new ArrayList<>(store.values());
-        list.sort(Comparator.comparingDouble(a -> a.relevance));
-        while (store.size() > maxChunks && !list.isEmpty()) {
-            Chunk rem = list.remove(0);
+    double score(Chunk c, long nowMillis) {
+        return score(c.relevance, c.created.toEpochMilli(), c.accesses, nowMillis);
+    }
+
+    /** score() from the raw fields, so stored chunks can be ranked without decoding them. */
+    double score(double relevance, long createdMillis, int accesses, long nowMillis) {
+        double ageHours = Math.max(0.0,(nowMillis - createdMillis)/1000.0/3600.0);
+        double freshness = Math.exp(-decayRate * ageHours);
+        return relevance * freshness + Math.log(1 + accesses);
+    }
+
+    /** Evicts down toward evictionTarget(): a regular overflow, or up to {@code batch} chunks if more. */
+    private synchronized int consolidate(int batch) {
+        int max = maxChunks;
+        int target = Math.min(max, Math.max(0, evictionTarget()));
+        // a regular overflow always clears in one pass; a lowered cap is worked off in batches
+        int count = Math.min(store.size() - target, Math.max(batch, max - target + 1));
+        if (count <= 0) return 0;
+        PriorityQueue<Chunk> lowest = new PriorityQueue<>(count, Comparator.comparingDouble((Chunk a) -> a.relevance).reversed());
+        for (Chunk c : store.values()) {
+            if (lowest.size() < count) lowest.add(c);
+            else if (c.relevance < lowest.peek().relevance) {
+                lowest.poll();
+                lowest.add(c);
+            }
+        }
+        List<Chunk> evicted = new ArrayList<>(lowest);
+        evicted.sort(Comparator.comparingDouble(a -> a.relevance));
+        for (Chunk rem : evicted) {
             store.remove(rem.id);
+            textChars -= rem.key.length() + rem.payload.length();
+            CHUNKS.add(-1);
+            CONSOLIDATED.increment();
+        }
+        onEvict(evicted);
+        return evicted.size();
+    }
+
+    /** Runs one consolidate pass of up to {@code batch} chunks if the store is above maxChunks; returns how many it removed. */
+    public synchronized int trimToCapacity(int batch) {
+        return store.size() > maxChunks ? consolidate(Math.max(1, batch)) : 0;
+    }
+
+    public void setMaxChunks(int maxChunks) {
+        this.maxChunks = Math.max(100, maxChunks);
+    }
+
+    /** Chunks in the heap store. */
+    public synchronized int size() { return store.size(); }
+
+    /** Characters of key and payload text held by the heap store. */
+    public synchronized long textChars() { return textChars; }
+
+    /** Store size consolidate shrinks to once maxChunks is exceeded; lower it to evict in batches. */
+    protected int evictionTarget() { return maxChunks; }
+
+    public int maxChunks() { return maxChunks; }
+
+    /** Called under the store lock after a new chunk is added. */
+    protected void onRemember(Chunk c) {}
+
+    /** Called under the store lock with the chunks consolidate removed, lowest relevance first. */
+    protected void onEvict(List<Chunk> evicted) {}
+
+    /**
+     * Adds to {@code out} at most {@code limit} of the best matches from outside the heap
+     * store, with relevance already scored via score(), and returns how many matched in
+     * total. Called without the store lock.
+     */
+    protected int collectColdMatches(String q, long nowMillis, int limit, List<Chunk> out) { return 0; }
+
+    /** Called under the store lock with the chunks retrieve is about to return. */
+    protected void onRetrieved(List<Chunk> returned) {}
+
+    synchronized boolean isHot(UUID id) {
+        return store.containsKey(id);
+    }
+
+    /** Puts a chunk back into the heap store without hooks, e.g. during recovery or promotion. */
+    synchronized void restore(Chunk c) {
+        if (store.put(c.id, c) == null) {
+            textChars += c.key.length() + c.payload.length();
+            CHUNKS.increment();
         }
     }
+
+    synchronized int hotCount() {
+        return store.size();
+    }
+
+    synchronized List<Chunk> hotChunks() {
+        return new ArrayList<>(store.values());
+    }
+
+    synchronized void enforceCapacity() {
+        while (store.size() > maxChunks) consolidate(0);
+    }
 }
 
 /*
@@ -0,0 +1,140 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.memory;
+
+import com.devin.nmar.metrics.LatencyHistogram;
+import com.devin.nmar.metrics.Metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * TieredMemoryAnchors - MemoryAnchors whose hot tier stays on heap and whose evictions go
+ * to memory-mapped cold segments instead of being dropped. Every remember is logged to a
+ * group-committed write-ahead log and is durable when the call returns; on open the WAL
+ * is replayed over the cold index, so a crash loses nothing that was acknowledged.
+ * Retrieve covers both tiers and promotes cold hits back to the hot tier; cold matches
+ * are ranked straight from the mapped frames and only the top {@code limit} are decoded.
+ */
+public class TieredMemoryAnchors extends MemoryAnchors implements AutoCloseable {
+    private static final LatencyHistogram WAL_SYNC = Metrics.timer("nmar_memory_wal_sync_seconds", "Wait for the WAL group commit in remember");
+    private static final Metrics.Counter EVICTED_COLD = Metrics.counter("nmar_memory_cold_evicted", "Chunks moved from the hot tier to cold segments");
+    private static final Metrics.Counter PROMOTED = Metrics.counter("nmar_memory_cold_promoted", "Cold chunks promoted back to the hot tier by retrieve");
+    private static final Metrics.Counter CHECKPOINTS = Metrics.counter("nmar_memory_wal_checkpoints", "WAL rewrites to a snapshot of the hot tier");
+
+    public static final long DEFAULT_SEGMENT_BYTES = 256L << 20;
+    public static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    private final ColdSegmentStore cold;
+    private final WriteAheadLog wal;
+    private final long checkpointBytes;
+
+    public TieredMemoryAnchors(Path dir, int maxHotChunks, double decayRate) {
+        this(dir, maxHotChunks, decayRate, DEFAULT_SEGMENT_BYTES, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    public TieredMemoryAnchors(Path dir, int maxHotChunks, double decayRate, long segmentBytes, long checkpointBytes) {
+        super(maxHotChunks, decayRate);
+        this.checkpointBytes = Math.max(1 << 20, checkpointBytes);
+        this.cold = new ColdSegmentStore(dir, segmentBytes);
+        Path log = dir.resolve("wal.log");
+        Map<UUID,Chunk> hot = new LinkedHashMap<>();
+        WriteAheadLog.replay(log, (type, buf, pos, len) -> {
+            if (type == WriteAheadLog.REMEMBER) {
+                Chunk c = ChunkCodec.decode(buf, pos);
+                hot.put(c.id, c);
+            } else if (type == WriteAheadLog.EVICT) {
+                hot.remove(new UUID(buf.getLong(pos), buf.getLong(pos + 8)));
+            }
+        });
+        this.wal = new WriteAheadLog(log);
+        for (Chunk c : hot.values()) {
+            cold.remove(c.id);
+            restore(c);
+        }
+        enforceCapacity();
+        checkpoint();
+    }
+
+    @Override
+    public Chunk remember(String key, String payload, double relevance) {
+        Chunk c = super.remember(key, payload, relevance);
+        long t0 = System.nanoTime();
+        wal.sync();
+        WAL_SYNC.record(System.nanoTime() - t0);
+        return c;
+    }
+
+    @Override
+    protected int evictionTarget() {
+        // evict a tenth at a time so cold appends and fsyncs are batched
+        return maxChunks() - maxChunks() / 10;
+    }
+
+    @Override
+    protected void onRemember(Chunk c) {
+        wal.append(WriteAheadLog.remember(c));
+    }
+
+    @Override
+    protected void onEvict(List<Chunk> evicted) {
+        if (evicted.isEmpty()) return;
+        cold.append(evicted);
+        for (Chunk c : evicted) wal.append(WriteAheadLog.evict(c));
+        EVICTED_COLD.add(evicted.size());
+        if (wal.sizeBytes() > checkpointBytes) checkpoint();
+    }
+
+    @Override
+    protected int collectColdMatches(String q, long nowMillis, int limit, List<Chunk> out) {
+        return cold.topMatches(q.getBytes(StandardCharsets.UTF_8), limit,
+            (relevance, created, accesses) -> score(relevance, created, accesses, nowMillis), out);
+    }
+
+    @Override
+    protected void onRetrieved(List<Chunk> returned) {
+        int promoted = 0;
+        for (Chunk c : returned) {
+            if (isHot(c.id)) continue;
+            restore(c);
+            cold.remove(c.id);
+            wal.append(WriteAheadLog.remember(c));
+            promoted++;
+        }
+        if (promoted > 0) {
+            PROMOTED.add(promoted);
+            enforceCapacity();
+        }
+    }
+
+    /** Rewrites the WAL as a snapshot of the hot tier so replay time stays bounded. */
+    public synchronized void checkpoint() {
+        List<byte[]> records = new ArrayList<>();
+        for (Chunk c : hotChunks()) records.add(WriteAheadLog.remember(c));
+        wal.rewrite(records);
+        CHECKPOINTS.increment();
+    }
+
+    public synchronized Map<String,Object> tierStats() {
+        Map<String,Object> m = new LinkedHashMap<>();
+        m.put("hotChunks", hotCount());
+        m.put("coldChunks", cold.size());
+        m.put("coldSegments", cold.segmentCount());
+        m.put("coldDeadBytes", cold.deadBytes());
+        m.put("walBytes", wal.sizeBytes());
+        return m;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) { checkpoint(); }
+        wal.close();
+        cold.close();
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
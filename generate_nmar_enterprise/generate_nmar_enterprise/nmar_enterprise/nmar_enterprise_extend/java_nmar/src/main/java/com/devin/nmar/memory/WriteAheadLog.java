@@ -0,0 +1,218 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.memory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WriteAheadLog - group-committed redo log for the hot tier. Writers append under the
+ * monitor and get a sequence number; one flusher thread takes everything pending, writes
+ * it with a single gathering write and one fsync, then wakes every writer whose record
+ * made it. Records are ChunkCodec frames whose body starts with a type byte. Creating
+ * the log and each checkpoint rename are followed by an fsync of the directory.
+ */
+final class WriteAheadLog implements AutoCloseable {
+    static final byte REMEMBER = 1;
+    static final byte EVICT = 2;
+
+    interface Visitor { void record(byte type, ByteBuffer buf, int bodyPos, int bodyLen); }
+
+    private final Path file;
+    private FileChannel ch;
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private long appended = 0;
+    private long durable = 0;
+    private long bytes;
+    private Throwable failure;
+    private boolean closed;
+    private boolean stopped;
+    private final Thread flusher;
+
+    WriteAheadLog(Path file) {
+        this.file = file;
+        try {
+            boolean created = !Files.exists(file);
+            this.ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+            this.bytes = ch.size();
+            ch.position(bytes);
+            if (created) syncDirectory(file.toAbsolutePath().getParent());
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+        this.flusher = new Thread(this::flushLoop, "nmar-wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    static byte[] remember(MemoryAnchors.Chunk c) {
+        byte[] chunk = ChunkCodec.encode(c);
+        byte[] rec = new byte[chunk.length + 1];
+        rec[0] = REMEMBER;
+        System.arraycopy(chunk, 0, rec, 1, chunk.length);
+        return rec;
+    }
+
+    static byte[] evict(MemoryAnchors.Chunk c) {
+        return ByteBuffer.allocate(17).put(EVICT)
+            .putLong(c.id.getMostSignificantBits()).putLong(c.id.getLeastSignificantBits()).array();
+    }
+
+    /** Queues a record; returns the sequence number to pass to awaitDurable. */
+    synchronized long append(byte[] record) {
+        if (closed) throw new IllegalStateException("wal closed");
+        if (failure != null) throw new RuntimeException("wal failed", failure);
+        ByteBuffer f = ChunkCodec.frame(record);
+        bytes += f.remaining();
+        pending.add(f);
+        notifyAll();
+        return ++appended;
+    }
+
+    synchronized void awaitDurable(long seq) {
+        boolean interrupted = false;
+        while (durable < seq && failure == null) {
+            if (stopped) break;
+            try { wait(); } catch (InterruptedException e) { interrupted = true; }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw new RuntimeException("wal write failed", failure);
+        if (durable < seq) throw new IllegalStateException("wal closed before record was durable");
+    }
+
+    /** Blocks until everything appended so far is on disk. */
+    void sync() {
+        long seq;
+        synchronized (this) { seq = appended; }
+        awaitDurable(seq);
+    }
+
+    synchronized long sizeBytes() { return bytes; }
+
+    private void flushLoop() {
+        while (true) {
+            List<ByteBuffer> batch;
+            long upTo;
+            FileChannel out;
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    try { wait(); } catch (InterruptedException e) { return; }
+                }
+                if (pending.isEmpty()) return;
+                batch = pending;
+                pending = new ArrayList<>();
+                upTo = appended;
+                out = ch;
+            }
+            try {
+                ByteBuffer[] bufs = batch.toArray(new ByteBuffer[0]);
+                long remaining = 0;
+                for (ByteBuffer b : bufs) remaining += b.remaining();
+                while (remaining > 0) remaining -= out.write(bufs);
+                out.force(false);
+                synchronized (this) { durable = upTo; notifyAll(); }
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) { failure = e; notifyAll(); }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replaces the log with {@code records} (a checkpoint of the hot tier). The new file is
+     * written and fsynced beside the old one and moved over it atomically.
+     */
+    synchronized void rewrite(List<byte[]> records) {
+        boolean interrupted = false;
+        while (durable < appended && failure == null) {
+            try { wait(); } catch (InterruptedException e) { interrupted = true; }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw new RuntimeException("wal write failed", failure);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            long written = 0;
+            try (FileChannel t = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (byte[] r : records) {
+                    ByteBuffer f = ChunkCodec.frame(r);
+                    written += f.remaining();
+                    while (f.hasRemaining()) t.write(f);
+                }
+                t.force(true);
+            }
+            ch.close();
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory(file.toAbsolutePath().getParent());
+            ch = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ);
+            ch.position(written);
+            bytes = written;
+        } catch (IOException e) {
+            failure = e;
+            notifyAll();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Forces {@code dir} itself to disk, so a file created or renamed in it survives a crash;
+     * fsyncing the file alone does not persist its directory entry.
+     */
+    static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        }
+    }
+
+    /**
+     * Feeds every intact record of {@code file} to the visitor in order and truncates the
+     * file at the first torn or corrupt frame. Returns the number of records replayed.
+     */
+    static int replay(Path file, Visitor visitor) {
+        if (!Files.exists(file)) return 0;
+        try {
+            ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file));
+            int pos = 0, n = 0;
+            while (pos + ChunkCodec.FRAME_HEADER <= b.limit()) {
+                int len = b.getInt(pos);
+                int body = pos + ChunkCodec.FRAME_HEADER;
+                if (len <= 0 || body + len > b.limit() || !ChunkCodec.crcMatches(b, body, len, b.getInt(pos + 4))) break;
+                visitor.record(b.get(body), b, body + 1, len - 1);
+                pos = body + len;
+                n++;
+            }
+            if (pos < b.limit()) {
+                try (FileChannel t = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    t.truncate(pos);
+                    t.force(true);
+                }
+            }
+            return n;
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+        }
+        try { flusher.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        synchronized (this) {
+            stopped = true;
+            notifyAll();
+            try { ch.close(); } catch (IOException e) { throw new UncheckedIOException(e); }
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
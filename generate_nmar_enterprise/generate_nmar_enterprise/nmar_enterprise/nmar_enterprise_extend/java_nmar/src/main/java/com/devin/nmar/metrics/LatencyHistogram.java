@@ -0,0 +1,76 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram - lock-free log-linear histogram in the style of HdrHistogram.
+ * Values below 32 get exact buckets; above that each power of two is split into 32
+ * linear sub-buckets, so any recorded value is reported within ~3%. Recording is one
+ * atomic increment plus a LongAdder add; readers scan the bucket array without locking.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+        long m = max.get();
+        while (v > m && !max.compareAndSet(m, v)) m = max.get();
+    }
+
+    public long count() { return count.sum(); }
+
+    public long sum() { return sum.sum(); }
+
+    public long max() { return max.get(); }
+
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) sum.sum() / n;
+    }
+
+    /** Upper bound of the bucket holding the q-th quantile (0 &lt; q &lt;= 1), capped at the recorded max. */
+    public long percentile(double q) {
+        long n = count.sum();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i=0;i<BUCKETS;i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    static int indexOf(long v) {
+        if (v < SUB_COUNT) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return SUB_COUNT + shift * SUB_COUNT + (int) ((v >>> shift) - SUB_COUNT);
+    }
+
+    static long upperBound(int idx) {
+        if (idx < SUB_COUNT) return idx;
+        int shift = (idx - SUB_COUNT) / SUB_COUNT;
+        long m = SUB_COUNT + (idx - SUB_COUNT) % SUB_COUNT;
+        long upper = ((m + 1) << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
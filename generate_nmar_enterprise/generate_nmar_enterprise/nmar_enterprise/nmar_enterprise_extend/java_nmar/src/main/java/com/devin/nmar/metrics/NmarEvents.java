@@ -0,0 +1,201 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * NmarEvents - custom JFR events, one per pipeline stage. They are only written while a
+ * flight recording is running (-XX:StartFlightRecording or jcmd JFR.start) and appear
+ * under the "NMAR" category. Call sites get a started event from the static factory
+ * (e.g. meshOperation()), which returns null without allocating when no recording has
+ * the event enabled, and close it with finish(...), which fills the fields only when the
+ * event will actually be written.
+ */
+public final class NmarEvents {
+    private NmarEvents() {}
+
+    private static final EventType MESH_OPERATION = EventType.getEventType(MeshOperation.class);
+    private static final EventType MEMORY_RETRIEVE = EventType.getEventType(MemoryRetrieve.class);
+    private static final EventType FUSION = EventType.getEventType(Fusion.class);
+    private static final EventType ENCODE = EventType.getEventType(Encode.class);
+    private static final EventType LEARN = EventType.getEventType(Learn.class);
+    private static final EventType STAGE_BATCH = EventType.getEventType(StageBatch.class);
+    private static final EventType DAO_CALL = EventType.getEventType(DaoCall.class);
+    private static final EventType EMBEDDING_CALL = EventType.getEventType(EmbeddingCall.class);
+
+    public static MeshOperation meshOperation() { return MESH_OPERATION.isEnabled() ? started(new MeshOperation()) : null; }
+
+    public static MemoryRetrieve memoryRetrieve() { return MEMORY_RETRIEVE.isEnabled() ? started(new MemoryRetrieve()) : null; }
+
+    public static Fusion fusion() { return FUSION.isEnabled() ? started(new Fusion()) : null; }
+
+    public static Encode encode() { return ENCODE.isEnabled() ? started(new Encode()) : null; }
+
+    public static Learn learn() { return LEARN.isEnabled() ? started(new Learn()) : null; }
+
+    public static StageBatch stageBatch() { return STAGE_BATCH.isEnabled() ? started(new StageBatch()) : null; }
+
+    public static DaoCall daoCall() { return DAO_CALL.isEnabled() ? started(new DaoCall()) : null; }
+
+    public static EmbeddingCall embeddingCall() { return EMBEDDING_CALL.isEnabled() ? started(new EmbeddingCall()) : null; }
+
+    private static <E extends Event> E started(E ev) {
+        ev.begin();
+        return ev;
+    }
+
+    @Name("com.devin.nmar.MeshOperation")
+    @Label("NMAR Mesh Operation")
+    @Category({"NMAR", "Mesh"})
+    @StackTrace(false)
+    public static class MeshOperation extends Event {
+        @Label("Operation") public String operation;
+        @Label("Nodes") public int nodes;
+        @Label("Edges") public long edges;
+        @Label("Removed Nodes") public int removed;
+
+        public void finish(String operation, int nodes, long edges, int removed) {
+            end();
+            if (!shouldCommit()) return;
+            this.operation = operation;
+            this.nodes = nodes;
+            this.edges = edges;
+            this.removed = removed;
+            commit();
+        }
+    }
+
+    @Name("com.devin.nmar.MemoryRetrieve")
+    @Label("NMAR Memory Retrieve")
+    @Category({"NMAR", "Memory"})
+    @StackTrace(false)
+    public static class MemoryRetrieve extends Event {
+        @Label("Stored Chunks") public int stored;
+        @Label("Hits") public int hits;
+
+        public void finish(int stored, int hits) {
+            end();
+            if (!shouldCommit()) return;
+            this.stored = stored;
+            this.hits = hits;
+            commit();
+        }
+    }
+
+    @Name("com.devin.nmar.Fusion")
+    @Label("NMAR Modality Fusion")
+    @Category({"NMAR", "Fusion"})
+    @StackTrace(false)
+    public static class Fusion extends Event {
+        @Label("Modalities") public int modalities;
+        @Label("Dimension") public int dim;
+
+        public void finish(int modalities, int dim) {
+            end();
+            if (!shouldCommit()) return;
+            this.modalities = modalities;
+            this.dim = dim;
+            commit();
+        }
+    }
+
+    @Name("com.devin.nmar.Encode")
+    @Label("NMAR Encode")
+    @Category({"NMAR", "Fusion"})
+    @StackTrace(false)
+    public static class Encode extends Event {
+        @Label("Modality") public String modality;
+        @Label("Dimension") public int dim;
+
+        public void finish(String modality, int dim) {
+            end();
+            if (!shouldCommit()) return;
+            this.modality = modality;
+            this.dim = dim;
+            commit();
+        }
+    }
+
+    @Name("com.devin.nmar.Learn")
+    @Label("NMAR Learner Update")
+    @Category({"NMAR", "Learning"})
+    @StackTrace(false)
+    public static class Learn extends Event {
+        @Label("Keys") public int keys;
+        @Label("Reward") public double reward;
+
+        public void finish(int keys, double reward) {
+            end();
+            if (!shouldCommit()) return;
+            this.keys = keys;
+            this.reward = reward;
+            commit();
+        }
+    }
+
+    @Name("com.devin.nmar.StageBatch")
+    @Label("NMAR Pipeline Stage Batch")
+    @Category({"NMAR", "Pipeline"})
+    @StackTrace(false)
+    public static class StageBatch extends Event {
+        @Label("Stage") public String stage;
+        @Label("Batch Size") public int batchSize;
+        @Label("Failed Tasks") public int failed;
+
+        public void finish(String stage, int batchSize, int failed) {
+            end();
+            if (!shouldCommit()) return;
+            this.stage = stage;
+            this.batchSize = batchSize;
+            this.failed = failed;
+            commit();
+        }
+    }
+
+    @Name("com.devin.nmar.DaoCall")
+    @Label("NMAR DAO Call")
+    @Category({"NMAR", "Persistence"})
+    @StackTrace(false)
+    public static class DaoCall extends Event {
+        @Label("Operation") public String operation;
+        @Label("Rows") public int rows;
+        @Label("Failed") public boolean failed;
+
+        public void finish(String operation, int rows, boolean failed) {
+            end();
+            if (!shouldCommit()) return;
+            this.operation = operation;
+            this.rows = rows;
+            this.failed = failed;
+            commit();
+        }
+    }
+
+    @Name("com.devin.nmar.EmbeddingCall")
+    @Label("NMAR Embedding Client Call")
+    @Category({"NMAR", "Model Service"})
+    @StackTrace(false)
+    public static class EmbeddingCall extends Event {
+        @Label("Modality") public String modality;
+        @Label("Dimension") public int dim;
+
+        public void finish(String modality, int dim) {
+            end();
+            if (!shouldCommit()) return;
+            this.modality = modality;
+            this.dim = dim;
+            commit();
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -3,75 +3,252 @@ Copyright © 2025 Devin B. Royal. All Rights Reserved.
 */
 package com.devin.nmar.persistence;
 
+import com.devin.nmar.admission.Deadline;
+import com.devin.nmar.admission.DeadlineExceededException;
+import com.devin.nmar.metrics.LatencyHistogram;
+import com.devin.nmar.metrics.Metrics;
+import com.devin.nmar.metrics.NmarEvents;
+
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import java.util.logging.Logger;
 
 /**
  * MemoryDAO - persistence layer for MemoryAnchors using PostgreSQL + pgvector.
  * NOTE: This class is a functional JDBC implementation. It expects the pgvector extension
  * and table created by migrations.
+ * At most maxConnections calls hold a connection at once; callers wait for a slot up to
+ * their Deadline (or acquireTimeoutMillis without one), and the remaining budget becomes
+ * the statement's query timeout, so a slow database sheds callers instead of piling up.
+ * Opening the connection is bounded the same way (pgjdbc loginTimeout/connectTimeout,
+ * at most DEFAULT_LOGIN_TIMEOUT_SECONDS). Running out of time anywhere - waiting for a
+ * slot, logging in, or a statement cancelled by its query timeout - surfaces as
+ * DeadlineExceededException rather than a wrapped SQLException, so admission control
+ * counts it as a drop.
  */
 public class MemoryDAO {
     private static final Logger LOG = Logger.getLogger(MemoryDAO.class.getName());
+    private static final LatencyHistogram SAVE_TIME = Metrics.timer("nmar_dao_save_seconds", "MemoryDAO.saveMemory latency");
+    private static final LatencyHistogram SAVE_BATCH_TIME = Metrics.timer("nmar_dao_save_batch_seconds", "MemoryDAO.saveMemories latency");
+    private static final LatencyHistogram NEAREST_TIME = Metrics.timer("nmar_dao_nearest_seconds", "MemoryDAO.nearestNeighbors latency");
+    private static final Metrics.Counter ERRORS = Metrics.counter("nmar_dao_errors", "Failed MemoryDAO calls");
+    private static final Metrics.Counter CONNECTION_TIMEOUTS = Metrics.counter("nmar_dao_connection_timeouts", "MemoryDAO calls that gave up waiting for a connection slot");
+    public static final int DEFAULT_MAX_CONNECTIONS = 16;
+    private static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 5000;
+    private static final int DEFAULT_LOGIN_TIMEOUT_SECONDS = 10;
+    /** SQLState PostgreSQL reports for a statement cancelled by its query timeout. */
+    private static final String QUERY_CANCELED = "57014";
     private final String jdbcUrl;
     private final String user;
     private final String pass;
+    private final int maxConnections;
+    private final Semaphore connections;
+
+    public static class Record {
+        public final String key;
+        public final String payload;
+        public final double relevance;
+        public final float[] embedding;
+        public Record(String key, String payload, double relevance, float[] embedding) { this.key=key; this.payload=payload; this.relevance=relevance; this.embedding=embedding; }
+    }
 
     public MemoryDAO(String jdbcUrl, String user, String pass) {
+        this(jdbcUrl, user, pass, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    public MemoryDAO(String jdbcUrl, String user, String pass, int maxConnections) {
         this.jdbcUrl = jdbcUrl;
         this.user = user;
         this.pass = pass;
+        this.maxConnections = Math.max(1, maxConnections);
+        this.connections = new Semaphore(this.maxConnections);
+    }
+
+    private interface SqlCall<T> { T run(Connection c) throws SQLException; }
+
+    /** Runs {@code call} on a fresh connection once a slot is free, giving up at the deadline. */
+    private <T> T withConnection(Deadline deadline, SqlCall<T> call) throws SQLException {
+        long waitMillis = deadline.isNone() ? DEFAULT_ACQUIRE_TIMEOUT_MILLIS : deadline.remainingMillis();
+        try {
+            if (!connections.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+                CONNECTION_TIMEOUTS.increment();
+                throw new DeadlineExceededException("MemoryDAO connection (all " + maxConnections + " busy)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a connection", e);
+        }
+        try (Connection c = connect(deadline)) {
+            return call.run(c);
+        } catch (SQLException e) {
+            if (e instanceof SQLTimeoutException || QUERY_CANCELED.equals(e.getSQLState()) || deadline.expired()) {
+                throw new DeadlineExceededException("MemoryDAO query", e);
+            }
+            throw e;
+        } finally {
+            connections.release();
+        }
+    }
+
+    /** Opens a connection whose login may take at most the remaining budget (or the default). */
+    private Connection connect(Deadline deadline) throws SQLException {
+        long seconds = DEFAULT_LOGIN_TIMEOUT_SECONDS;
+        if (!deadline.isNone()) {
+            long millis = deadline.remainingMillis();
+            if (millis <= 0) throw new DeadlineExceededException("MemoryDAO connection");
+            seconds = Math.min(seconds, (millis + 999) / 1000);
+        }
+        Properties props = new Properties();
+        if (user != null) props.setProperty("user", user);
+        if (pass != null) props.setProperty("password", pass);
+        props.setProperty("loginTimeout", Long.toString(seconds));
+        props.setProperty("connectTimeout", Long.toString(seconds));
+        return DriverManager.getConnection(jdbcUrl, props);
     }
 
-    private Connection conn() throws SQLException {
-        return DriverManager.getConnection(jdbcUrl, user, pass);
+    private static void applyTimeout(Statement s, Deadline deadline) throws SQLException {
+        if (deadline.isNone()) return;
+        long millis = deadline.remainingMillis();
+        if (millis <= 0) throw new DeadlineExceededException("MemoryDAO query");
+        s.setQueryTimeout((int) Math.max(1, (millis + 999) / 1000));
+    }
+
+    private static <T> T timed(String operation, LatencyHistogram histogram, Supplier<T> call, ToIntFunction<T> rows) {
+        NmarEvents.DaoCall ev = NmarEvents.daoCall();
+        long t0 = System.nanoTime();
+        T result = null;
+        boolean ok = false;
+        try {
+            result = call.get();
+            ok = true;
+            return result;
+        } catch (RuntimeException e) {
+            ERRORS.increment();
+            throw e;
+        } finally {
+            histogram.record(System.nanoTime() - t0);
+            if (ev != null) ev.finish(operation, result == null ? 0 : rows.applyAsInt(result), !ok);
+        }
     }
 
     public UUID saveMemory(String key, String payload, double relevance, float[] embedding) {
+        return saveMemory(key, payload, relevance, embedding, Deadline.none());
+    }
+
+    /** As saveMemory, waiting for a connection and running the insert only within {@code deadline}. */
+    public UUID saveMemory(String key, String payload, double relevance, float[] embedding, Deadline deadline) {
+        return timed("save", SAVE_TIME, () -> insertMemory(key, payload, relevance, embedding, deadline), id -> 1);
+    }
+
+    private UUID insertMemory(String key, String payload, double relevance, float[] embedding, Deadline deadline) {
         String sql = "INSERT INTO memory_anchors (key, payload, relevance, embedding) VALUES (?, ?, ?, ?::vector) RETURNING id";
-        try (Connection c = conn(); PreparedStatement p = c.prepareStatement(sql)) {
-            p.setString(1, key);
-            p.setString(2, payload);
-            p.setDouble(3, relevance);
-            // array -> string format for pgvector: '[v1,v2,...]'
-            String vec = arrayToPgVector(embedding);
-            p.setString(4, vec);
-            try (ResultSet rs = p.executeQuery()) {
-                if (rs.next()) return UUID.fromString(rs.getString(1));
-            }
+        try {
+            return withConnection(deadline, c -> {
+                try (PreparedStatement p = c.prepareStatement(sql)) {
+                    applyTimeout(p, deadline);
+                    p.setString(1, key);
+                    p.setString(2, payload);
+                    p.setDouble(3, relevance);
+                    // array -> string format for pgvector: '[v1,v2,...]'
+                    String vec = arrayToPgVector(embedding);
+                    p.setString(4, vec);
+                    try (ResultSet rs = p.executeQuery()) {
+                        if (rs.next()) return UUID.fromString(rs.getString(1));
+                    }
+                }
+                return null;
+            });
         } catch (SQLException e) {
             LOG.severe("saveMemory failed: " + e.getMessage());
             throw new RuntimeException(e);
         }
-        return null;
+    }
+
+    /**
+     * Writes a batch of memories over one connection and one JDBC batch in a single transaction.
+     * Returns the per-row update counts.
+     */
+    public int[] saveMemories(List<Record> records) {
+        return saveMemories(records, Deadline.none());
+    }
+
+    /** As saveMemories, waiting for a connection and running the batch only within {@code deadline}. */
+    public int[] saveMemories(List<Record> records, Deadline deadline) {
+        if (records.isEmpty()) return new int[0];
+        return timed("saveBatch", SAVE_BATCH_TIME, () -> insertMemories(records, deadline), counts -> counts.length);
+    }
+
+    private int[] insertMemories(List<Record> records, Deadline deadline) {
+        String sql = "INSERT INTO memory_anchors (key, payload, relevance, embedding) VALUES (?, ?, ?, ?::vector)";
+        try {
+            return withConnection(deadline, c -> {
+                c.setAutoCommit(false);
+                try (PreparedStatement p = c.prepareStatement(sql)) {
+                    applyTimeout(p, deadline);
+                    for (Record r : records) {
+                        p.setString(1, r.key);
+                        p.setString(2, r.payload);
+                        p.setDouble(3, r.relevance);
+                        p.setString(4, arrayToPgVector(r.embedding));
+                        p.addBatch();
+                    }
+                    int[] counts = p.executeBatch();
+                    c.commit();
+                    return counts;
+                } catch (SQLException | RuntimeException e) {
+                    c.rollback();
+                    throw e;
+                }
+            });
+        } catch (SQLException e) {
+            LOG.severe("saveMemories failed: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
     }
 
     public List<Map<String,Object>> nearestNeighbors(float[] embedding, int k) {
-        List<Map<String,Object>> out = new ArrayList<>();
+        return nearestNeighbors(embedding, k, Deadline.none());
+    }
+
+    /** As nearestNeighbors, with the remaining budget applied as the query timeout. */
+    public List<Map<String,Object>> nearestNeighbors(float[] embedding, int k, Deadline deadline) {
+        return timed("nearest", NEAREST_TIME, () -> queryNearest(embedding, k, deadline), List::size);
+    }
+
+    private List<Map<String,Object>> queryNearest(float[] embedding, int k, Deadline deadline) {
         String sql = "SELECT id, key, payload, relevance, 1 - (embedding <#> ?::vector) AS similarity FROM memory_anchors ORDER BY embedding <#> ?::vector LIMIT ?";
         // NOTE: '<#>' is pgvector operator for cosine distance; adjust for your pgvector version
-        try (Connection c = conn(); PreparedStatement p = c.prepareStatement(sql)) {
-            String vec = arrayToPgVector(embedding);
-            p.setString(1, vec);
-            p.setString(2, vec);
-            p.setInt(3, k);
-            try (ResultSet rs = p.executeQuery()) {
-                while (rs.next()) {
-                    Map<String,Object> m = new HashMap<>();
-                    m.put("id", rs.getString("id"));
-                    m.put("key", rs.getString("key"));
-                    m.put("payload", rs.getString("payload"));
-                    m.put("relevance", rs.getDouble("relevance"));
-                    m.put("similarity", rs.getDouble("similarity"));
-                    out.add(m);
+        try {
+            return withConnection(deadline, c -> {
+                List<Map<String,Object>> out = new ArrayList<>();
+                try (PreparedStatement p = c.prepareStatement(sql)) {
+                    applyTimeout(p, deadline);
+                    String vec = arrayToPgVector(embedding);
+                    p.setString(1, vec);
+                    p.setString(2, vec);
+                    p.setInt(3, k);
+                    try (ResultSet rs = p.executeQuery()) {
+                        while (rs.next()) {
+                            Map<String,Object> m = new HashMap<>();
+                            m.put("id", rs.getString("id"));
+                            m.put("key", rs.getString("key"));
+                            m.put("payload", rs.getString("payload"));
+                            m.put("relevance", rs.getDouble("relevance"));
+                            m.put("similarity", rs.getDouble("similarity"));
+                            out.add(m);
+                        }
+                    }
                 }
-            }
+                return out;
+            });
         } catch (SQLException e) {
             LOG.severe("nearestNeighbors failed: " + e.getMessage());
             throw new RuntimeException(e);
         }
-        return out;
     }
 
     private String arrayToPgVector(float[] v) {
@@ -0,0 +1,243 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.pipeline;
+
+import com.devin.nmar.admission.AdaptiveLimiter;
+import com.devin.nmar.admission.AdmissionController;
+import com.devin.nmar.admission.Deadline;
+import com.devin.nmar.admission.DeadlineExceededException;
+import com.devin.nmar.core.NeuroMesh;
+import com.devin.nmar.fusion.ModalityFusion;
+import com.devin.nmar.learning.AdaptiveLearner;
+import com.devin.nmar.memory.MemoryAnchors;
+import com.devin.nmar.meta.MetaReasoner;
+import com.devin.nmar.persistence.MemoryDAO;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * NmarPipeline - the App flow (encode, fuse, mesh, remember, evaluate, learn) as a chain of
+ * bounded stages. Fusion, mesh updates and memory/DAO writes are micro-batched: the mesh
+ * stage resolves every key in a batch and then runs a single propagate for the batch.
+ * Stages that touch the synchronized mesh/learner default to one worker, since extra
+ * workers would only queue on the monitor.
+ * With an AdmissionController configured, submit rejects work beyond the adaptive
+ * concurrency limit, and under load the optional tail (extra propagate steps, learner
+ * updates) is cut back before any required stage is.
+ * Per-request stages (encode, fuse, evaluate, learn) fail only the task that throws. The
+ * mesh and memory stages do batch-wide work (one propagate, one DAO transaction), so a
+ * failure there fails the whole micro-batch; heap-side effects already applied for it
+ * (mesh nodes, remembered chunks) are not rolled back.
+ * Once close() has begun, submit and trySubmit reject with RejectedExecutionException.
+ * A task is submitted once: handing it in again while it is queued or after it completed
+ * throws IllegalStateException. Only a trySubmit that timed out (returned null) leaves
+ * the task free to be submitted again.
+ */
+public class NmarPipeline implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(NmarPipeline.class.getName());
+
+    public static class Config {
+        public int queueCapacity = 256;
+        public int encodeWorkers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        public int fuseWorkers = 2;
+        public int fuseBatch = 32;
+        public int meshBatch = 64;
+        public int memoryWorkers = 1;
+        public int memoryBatch = 64;
+        public int evaluateWorkers = 2;
+        public int keysPerRequest = 8;
+        public double nodeActivation = 0.5;
+        public double propagateDecay = 0.04;
+        public int propagateSteps = 4;
+        public double memoryRelevance = 0.9;
+        /** Optional; null admits everything and never sheds. */
+        public AdmissionController admission;
+    }
+
+    private final List<Stage> stages = new ArrayList<>();
+    private final AdmissionController admission;
+    // submitters hold the read side while enqueuing, so close() never misses a task put after the drain
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    public NmarPipeline(NeuroMesh mesh, ModalityFusion fusion, MemoryAnchors memory, MetaReasoner meta, AdaptiveLearner learner) {
+        this(mesh, fusion, memory, meta, learner, null, new Config());
+    }
+
+    /** @param dao optional; when non-null the memory stage also writes each batch through MemoryDAO.saveMemories */
+    public NmarPipeline(NeuroMesh mesh, ModalityFusion fusion, MemoryAnchors memory, MetaReasoner meta,
+                        AdaptiveLearner learner, MemoryDAO dao, Config cfg) {
+        int cap = cfg.queueCapacity;
+        this.admission = cfg.admission;
+        stages.add(new Stage("encode", cap, cfg.encodeWorkers, 1, Stage.perTask(t -> {
+            Map<String,ModalityFusion.Embedding> mods = new HashMap<>();
+            if (t.text != null) mods.put("text", fusion.encodeText(t.text));
+            if (t.image != null) mods.put("image", fusion.encodeImage(t.image, t.imageMeta));
+            if (t.sensor != null) mods.put("sensor", fusion.encodeSensor(t.sensor));
+            if (mods.isEmpty()) throw new IllegalArgumentException("task has no modalities");
+            t.modalities = mods;
+        })));
+        stages.add(new Stage("fuse", cap, cfg.fuseWorkers, cfg.fuseBatch, Stage.perTask(t -> {
+            ModalityFusion.Embedding fused = fusion.fuse(t.modalities);
+            List<String> keys = new ArrayList<>();
+            for (int i=0;i<Math.min(cfg.keysPerRequest, fused.v.length);i++) keys.add("sem:" + i + ":" + (int)(fused.v[i]*1000));
+            t.fused = fused;
+            t.keys = keys;
+        })));
+        stages.add(new Stage("mesh", cap, 1, cfg.meshBatch, batch -> {
+            Deadline tightest = Deadline.none();
+            for (PipelineTask t : batch) {
+                for (String k : t.keys) mesh.getOrCreate(k, cfg.nodeActivation);
+                tightest = tightest.min(t.deadline);
+            }
+            int steps = admission == null ? cfg.propagateSteps : admission.affordableSteps("propagate", tightest, cfg.propagateSteps);
+            if (steps == 0) return;
+            long t0 = System.nanoTime();
+            mesh.propagate(cfg.propagateDecay, steps);
+            if (admission != null) admission.recordSteps("propagate", steps, System.nanoTime() - t0);
+        }));
+        stages.add(new Stage("memory", cap, cfg.memoryWorkers, cfg.memoryBatch, batch -> {
+            List<MemoryDAO.Record> records = dao == null ? null : new ArrayList<>(batch.size());
+            Deadline tightest = Deadline.none();
+            for (PipelineTask t : batch) {
+                tightest = tightest.min(t.deadline);
+                String key = t.memoryKey != null ? t.memoryKey : t.keys.get(0);
+                String payload = t.text != null ? t.text : "";
+                t.chunk = memory.remember(key, payload, cfg.memoryRelevance);
+                if (records != null) records.add(new MemoryDAO.Record(key, payload, cfg.memoryRelevance, toFloats(t.fused.v)));
+            }
+            if (records != null) dao.saveMemories(records, tightest);
+        }));
+        stages.add(new Stage("evaluate", cap, cfg.evaluateWorkers, 1, Stage.perTask(t -> {
+            t.feedback = meta.evaluate(t.text == null ? "" : t.text, t.output, t.confidence, Collections.emptyMap());
+        })));
+        stages.add(new Stage("learn", cap, 1, 1, true, Stage.perTask(t -> {
+            if (admission == null) learner.apply(t.keys, t.feedback.reward);
+            else admission.runOptional("learn", t.deadline, () -> learner.apply(t.keys, t.feedback.reward));
+        })));
+        for (int i=0;i<stages.size();i++) stages.get(i).start(i + 1 < stages.size() ? stages.get(i + 1) : null);
+        LOG.info(() -> "NmarPipeline started stages=" + stages.size() + " queueCapacity=" + cap);
+    }
+
+    /**
+     * Enqueues a task, blocking while the first stage is full (but never past the task's
+     * deadline). With admission configured, a task over the concurrency limit gets an
+     * already-failed future (RejectedExecutionException) instead of a queue slot, as does
+     * every task submitted once close() has begun.
+     */
+    public CompletableFuture<PipelineTask> submit(PipelineTask task) throws InterruptedException {
+        claim(task);
+        closeLock.readLock().lock();
+        try {
+            if (rejectIfClosed(task)) return task.done;
+            AdaptiveLimiter.Permit permit = admit(task);
+            if (task.done.isDone()) return task.done;
+            track(task, permit);
+            if (task.deadline.isNone()) stages.get(0).put(task);
+            else if (!stages.get(0).offer(task, task.deadline.remainingNanos(), TimeUnit.NANOSECONDS)) {
+                task.done.completeExceptionally(new DeadlineExceededException("submit"));
+            }
+            return task.done;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Enqueues a task, waiting at most {@code timeout}; returns null if the pipeline stayed
+     * saturated (the task may then be submitted again), and an already-failed future if it
+     * is rejected or closed.
+     */
+    public CompletableFuture<PipelineTask> trySubmit(PipelineTask task, long timeout, TimeUnit unit) throws InterruptedException {
+        claim(task);
+        closeLock.readLock().lock();
+        try {
+            if (rejectIfClosed(task)) return task.done;
+            AdaptiveLimiter.Permit permit = admit(task);
+            if (task.done.isDone()) return task.done;
+            if (!stages.get(0).offer(task, timeout, unit)) {
+                // not queued: hand the permit back without a latency sample and leave the task reusable
+                if (permit != null) permit.ignore();
+                task.submitted.set(false);
+                return null;
+            }
+            track(task, permit);
+            return task.done;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    private static void claim(PipelineTask task) {
+        if (task.done.isDone() || !task.submitted.compareAndSet(false, true)) {
+            throw new IllegalStateException("PipelineTask already submitted");
+        }
+    }
+
+    private boolean rejectIfClosed(PipelineTask task) {
+        if (!closed) return false;
+        task.done.completeExceptionally(new RejectedExecutionException("NmarPipeline is closed"));
+        return true;
+    }
+
+    // null without admission; a rejected task comes back with its future already failed
+    private AdaptiveLimiter.Permit admit(PipelineTask task) {
+        if (admission == null) return null;
+        AdaptiveLimiter.Permit permit = admission.admit(task.deadline);
+        if (permit == null) task.done.completeExceptionally(new RejectedExecutionException("NmarPipeline over its admission limit"));
+        return permit;
+    }
+
+    // releases the permit with the task's outcome once it completes
+    private static void track(PipelineTask task, AdaptiveLimiter.Permit permit) {
+        if (permit == null) return;
+        task.done.whenComplete((t, e) -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause == null) permit.success();
+            else if (cause instanceof DeadlineExceededException) permit.dropped();
+            else permit.ignore();
+        });
+    }
+
+    /** Per-stage queue depth, throughput and latency, in pipeline order. */
+    public Map<String,Object> stats() {
+        Map<String,Object> out = new LinkedHashMap<>();
+        for (Stage s : stages) out.put(s.name(), s.stats());
+        return out;
+    }
+
+    private static float[] toFloats(double[] v) {
+        float[] f = new float[v.length];
+        for (int i=0;i<v.length;i++) f[i] = (float) v[i];
+        return f;
+    }
+
+    /** Rejects new submissions, drains in-flight work stage by stage, then stops the workers. */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            for (Stage s : stages) s.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted", e);
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,66 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.pipeline;
+
+import com.devin.nmar.admission.Deadline;
+import com.devin.nmar.fusion.ModalityFusion;
+import com.devin.nmar.memory.MemoryAnchors;
+import com.devin.nmar.meta.MetaReasoner;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * PipelineTask - one request flowing through NmarPipeline; stages fill in their results in order.
+ */
+public class PipelineTask {
+    public final String text;
+    public final byte[] image;
+    public final String imageMeta;
+    public final double[] sensor;
+    public final String memoryKey;
+    public final String output;
+    public final double confidence;
+    /** Stages fail (or, for optional stages, skip) the task once this passes. */
+    public final Deadline deadline;
+
+    volatile Map<String, ModalityFusion.Embedding> modalities;
+    volatile ModalityFusion.Embedding fused;
+    volatile List<String> keys;
+    volatile MemoryAnchors.Chunk chunk;
+    volatile MetaReasoner.Feedback feedback;
+    volatile long enqueuedNanos;
+    final long submittedNanos = System.nanoTime();
+    final CompletableFuture<PipelineTask> done = new CompletableFuture<>();
+    // claimed by the submit that owns the task; released again only when trySubmit times out
+    final AtomicBoolean submitted = new AtomicBoolean();
+
+    public PipelineTask(String text, byte[] image, String imageMeta, double[] sensor, String memoryKey, String output, double confidence) {
+        this(text, image, imageMeta, sensor, memoryKey, output, confidence, Deadline.none());
+    }
+
+    public PipelineTask(String text, byte[] image, String imageMeta, double[] sensor, String memoryKey, String output, double confidence,
+                        Deadline deadline) {
+        this.text = text;
+        this.image = image;
+        this.imageMeta = imageMeta;
+        this.sensor = sensor;
+        this.memoryKey = memoryKey;
+        this.output = output;
+        this.confidence = confidence;
+        this.deadline = deadline;
+    }
+
+    public Map<String, ModalityFusion.Embedding> modalities() { return modalities; }
+    public ModalityFusion.Embedding fused() { return fused; }
+    public List<String> keys() { return keys; }
+    public MemoryAnchors.Chunk chunk() { return chunk; }
+    public MetaReasoner.Feedback feedback() { return feedback; }
+    public CompletableFuture<PipelineTask> future() { return done; }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,204 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.pipeline;
+
+import com.devin.nmar.admission.DeadlineExceededException;
+import com.devin.nmar.metrics.LatencyHistogram;
+import com.devin.nmar.metrics.Metrics;
+import com.devin.nmar.metrics.NmarEvents;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stage - a bounded input queue drained by a fixed set of worker threads.
+ * Workers take up to batchSize tasks at a time, run the handler on the batch and hand each
+ * task to the next stage with a blocking put, so a saturated stage stalls its upstream
+ * workers instead of letting queues grow (backpressure propagates back to submit).
+ * Tasks whose deadline has passed are taken out of the batch before the handler runs:
+ * a required stage fails them with DeadlineExceededException, an optional stage lets
+ * them through untouched.
+ * A plain Handler is all-or-nothing: if it throws, every task in the batch fails with that
+ * exception, including tasks whose side effects it had already applied. Handlers built
+ * with perTask run each task on its own and fail only the tasks that throw; the rest of
+ * the batch moves on.
+ * Each handler call is timed into nmar_pipeline_&lt;name&gt;_batch_seconds and, while a
+ * flight recording is running, written as an NmarEvents.StageBatch event.
+ */
+public class Stage {
+    private static final Logger LOG = Logger.getLogger(Stage.class.getName());
+
+    public interface Handler { void handle(List<PipelineTask> batch) throws Exception; }
+
+    public interface TaskHandler { void handle(PipelineTask task) throws Exception; }
+
+    /** Handler running {@code body} on each task of a batch; a task whose call throws fails alone. */
+    public static Handler perTask(TaskHandler body) {
+        return batch -> {
+            for (PipelineTask t : batch) {
+                try {
+                    body.handle(t);
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "pipeline task failed", e);
+                    t.done.completeExceptionally(e);
+                }
+            }
+        };
+    }
+
+    private final String name;
+    private final BlockingQueue<PipelineTask> queue;
+    private final int batchSize;
+    private final Handler handler;
+    private final boolean optional;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile Stage next;
+    private volatile boolean running = true;
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder serviceNanos = new LongAdder();
+    private final AtomicLong maxServiceNanos = new AtomicLong();
+    private final LatencyHistogram batchTime;
+
+    public Stage(String name, int queueCapacity, int workerCount, int batchSize, Handler handler) {
+        this(name, queueCapacity, workerCount, batchSize, false, handler);
+    }
+
+    /** @param optional when true, late tasks skip this stage instead of failing */
+    public Stage(String name, int queueCapacity, int workerCount, int batchSize, boolean optional, Handler handler) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.handler = handler;
+        this.optional = optional;
+        this.batchTime = Metrics.timer("nmar_pipeline_" + name + "_batch_seconds", "Pipeline stage " + name + " handler latency per batch");
+        for (int i=0;i<Math.max(1, workerCount);i++) {
+            Thread t = new Thread(this::runWorker, "nmar-" + name + "-" + i);
+            t.setDaemon(true);
+            workers.add(t);
+        }
+    }
+
+    void start(Stage next) {
+        this.next = next;
+        for (Thread t : workers) t.start();
+    }
+
+    public String name() { return name; }
+
+    void put(PipelineTask task) throws InterruptedException {
+        task.enqueuedNanos = System.nanoTime();
+        queue.put(task);
+    }
+
+    boolean offer(PipelineTask task, long timeout, TimeUnit unit) throws InterruptedException {
+        task.enqueuedNanos = System.nanoTime();
+        return queue.offer(task, timeout, unit);
+    }
+
+    private void runWorker() {
+        List<PipelineTask> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                PipelineTask first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                if (batchSize > 1) queue.drainTo(batch, batchSize - 1);
+                long t0 = System.nanoTime();
+                for (PipelineTask t : batch) waitNanos.add(t0 - t.enqueuedNanos);
+                dropLate(batch);
+                if (batch.isEmpty()) continue;
+                NmarEvents.StageBatch ev = NmarEvents.stageBatch();
+                long h0 = System.nanoTime();
+                try {
+                    handler.handle(batch);
+                } catch (Exception e) {
+                    batchTime.record(System.nanoTime() - h0);
+                    if (ev != null) ev.finish(name, batch.size(), batch.size());
+                    LOG.log(Level.WARNING, "stage " + name + " failed", e);
+                    failed.add(batch.size());
+                    for (PipelineTask t : batch) t.done.completeExceptionally(e);
+                    batch.clear();
+                    continue;
+                }
+                batchTime.record(System.nanoTime() - h0);
+                // tasks a perTask handler failed are already completed and are not forwarded
+                int failedTasks = 0;
+                for (PipelineTask t : batch) if (t.done.isDone()) failedTasks++;
+                if (ev != null) ev.finish(name, batch.size(), failedTasks);
+                long dt = System.nanoTime() - t0;
+                serviceNanos.add(dt);
+                maxServiceNanos.accumulateAndGet(dt, Math::max);
+                batches.increment();
+                failed.add(failedTasks);
+                processed.add(batch.size() - failedTasks);
+                for (PipelineTask t : batch) forward(t);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            for (PipelineTask t : batch) t.done.completeExceptionally(e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dropLate(List<PipelineTask> batch) throws InterruptedException {
+        for (Iterator<PipelineTask> it = batch.iterator(); it.hasNext(); ) {
+            PipelineTask t = it.next();
+            if (!t.deadline.expired()) continue;
+            it.remove();
+            if (!optional) {
+                expired.increment();
+                t.done.completeExceptionally(new DeadlineExceededException(name));
+            } else {
+                skipped.increment();
+                forward(t);
+            }
+        }
+    }
+
+    private void forward(PipelineTask t) throws InterruptedException {
+        if (t.done.isDone()) return;
+        if (next == null) t.done.complete(t);
+        else next.put(t);
+    }
+
+    /** Stops accepting new work once the queue has drained and waits for the workers to exit. */
+    void shutdown() throws InterruptedException {
+        running = false;
+        for (Thread t : workers) t.join();
+    }
+
+    public Map<String,Object> stats() {
+        Map<String,Object> out = new HashMap<>();
+        long n = processed.sum();
+        long b = batches.sum();
+        out.put("queueDepth", queue.size());
+        out.put("queueCapacity", queue.size() + queue.remainingCapacity());
+        out.put("workers", workers.size());
+        out.put("processed", n);
+        out.put("failed", failed.sum());
+        out.put("expired", expired.sum());
+        out.put("skipped", skipped.sum());
+        out.put("avgBatchSize", b == 0 ? 0.0 : (double) n / b);
+        out.put("avgQueueWaitMicros", n == 0 ? 0.0 : waitNanos.sum() / 1000.0 / n);
+        out.put("avgServiceMicros", n == 0 ? 0.0 : serviceNanos.sum() / 1000.0 / n);
+        out.put("maxBatchServiceMicros", maxServiceNanos.get() / 1000.0);
+        return out;
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,119 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.quant;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * MappedVectorFile - append-only file of float32 vectors read through mmap, used as the
+ * off-heap full-precision source for QuantizedVectorStore rerank. Vectors are addressed by
+ * ordinal (0, 1, 2, ... in append order); pass {@code file::get} as the store's source when
+ * ids are those ordinals. Layout: [int dim][int 0][long count] then little-endian float32
+ * rows, mapped (and grown) in 64MB regions, so the page cache rather than the Java heap holds them.
+ */
+public class MappedVectorFile implements AutoCloseable {
+    private static final int HEADER = 16;
+    private static final long REGION_BYTES = 64L << 20;
+
+    private final FileChannel ch;
+    private final int dim;
+    private final int vectorBytes;
+    private final int perRegion;
+    private final MappedByteBuffer header;
+    private volatile ByteBuffer[] regions = new ByteBuffer[0];
+    private volatile long count;
+
+    /** Opens or creates {@code file}; an existing file must have been written with the same dim. */
+    public MappedVectorFile(Path file, int dim) {
+        if (dim < 1) throw new IllegalArgumentException("dim must be at least 1, got " + dim);
+        this.dim = dim;
+        this.vectorBytes = dim * Float.BYTES;
+        this.perRegion = (int) Math.max(1, REGION_BYTES / vectorBytes);
+        try {
+            this.ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean fresh = ch.size() < HEADER;
+            this.header = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+            if (fresh) {
+                header.putInt(0, dim).putInt(4, 0).putLong(8, 0);
+            } else if (header.getInt(0) != dim) {
+                ch.close();
+                throw new IllegalArgumentException(file + " holds dim " + header.getInt(0) + ", expected " + dim);
+            }
+            this.count = header.getLong(8);
+            mapExisting();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int dim() { return dim; }
+
+    public long size() { return count; }
+
+    /** Appends {@code v} and returns its ordinal. */
+    public synchronized long append(float[] v) {
+        if (v.length != dim) throw new IllegalArgumentException("expected dim " + dim + ", got " + v.length);
+        long ordinal = count;
+        ByteBuffer r = region((int) (ordinal / perRegion));
+        int off = (int) (ordinal % perRegion) * vectorBytes;
+        for (int i=0;i<dim;i++) r.putFloat(off + i * Float.BYTES, v[i]);
+        count = ordinal + 1;
+        header.putLong(8, count);
+        return ordinal;
+    }
+
+    /** The vector at {@code ordinal}, copied out of the mapping. */
+    public float[] get(long ordinal) {
+        if (ordinal < 0 || ordinal >= count) throw new IllegalArgumentException("no vector " + ordinal + " (size " + count + ")");
+        ByteBuffer r = regions[(int) (ordinal / perRegion)];
+        int off = (int) (ordinal % perRegion) * vectorBytes;
+        float[] out = new float[dim];
+        for (int i=0;i<dim;i++) out[i] = r.getFloat(off + i * Float.BYTES);
+        return out;
+    }
+
+    private ByteBuffer region(int idx) {
+        ByteBuffer[] rs = regions;
+        if (idx < rs.length) return rs[idx];
+        try {
+            ByteBuffer[] grown = Arrays.copyOf(rs, idx + 1);
+            for (int i=rs.length;i<=idx;i++) {
+                long pos = HEADER + (long) i * perRegion * vectorBytes;
+                grown[i] = ch.map(FileChannel.MapMode.READ_WRITE, pos, (long) perRegion * vectorBytes).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            regions = grown;
+            return grown[idx];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Maps the regions an existing file already holds, so get works right after reopening. */
+    private void mapExisting() {
+        if (count > 0) region((int) ((count - 1) / perRegion));
+    }
+
+    public synchronized void sync() {
+        for (ByteBuffer r : regions) ((MappedByteBuffer) r).force();
+        header.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        sync();
+        try { ch.close(); } catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
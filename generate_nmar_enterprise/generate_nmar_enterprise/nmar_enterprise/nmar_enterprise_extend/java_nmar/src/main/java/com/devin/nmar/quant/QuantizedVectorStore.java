@@ -0,0 +1,196 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.quant;
+
+import com.devin.nmar.metrics.LatencyHistogram;
+import com.devin.nmar.metrics.Metrics;
+
+import java.util.*;
+import java.util.function.LongFunction;
+
+/**
+ * QuantizedVectorStore - in-process top-k inner-product search over quantized codes.
+ * Codes live in one contiguous byte[] (codeBytes per vector) next to a long[] of ids,
+ * which is all the store keeps on the heap. Full-precision vectors stay outside it: given
+ * an originals source (a MappedVectorFile, the cold tier, MemoryDAO), search can pull
+ * k * rerankFactor candidates from the codes and fetch only those to rescore exactly.
+ */
+public class QuantizedVectorStore {
+    private static final LatencyHistogram SEARCH_TIME = Metrics.timer("nmar_quant_search_seconds", "QuantizedVectorStore.search latency");
+    private static final LatencyHistogram RERANK_TIME = Metrics.timer("nmar_quant_rerank_seconds", "Full-precision rerank part of QuantizedVectorStore.search");
+
+    public static class Hit {
+        public final long id;
+        public final float score;
+        public Hit(long id, float score) { this.id=id; this.score=score; }
+    }
+
+    private final VectorQuantizer quantizer;
+    private final LongFunction<float[]> originals;
+    private final int dim;
+    private final int codeBytes;
+    private byte[] codes;
+    private long[] ids;
+    private int size = 0;
+
+    /** Codes only; search cannot rerank. */
+    public QuantizedVectorStore(VectorQuantizer quantizer) {
+        this(quantizer, null);
+    }
+
+    /** @param originals full-precision vector by id, read only for rerank and searchExact; may be null */
+    public QuantizedVectorStore(VectorQuantizer quantizer, LongFunction<float[]> originals) {
+        this.quantizer = quantizer;
+        this.originals = originals;
+        this.dim = quantizer.dim();
+        this.codeBytes = quantizer.codeBytes();
+        this.codes = new byte[64 * codeBytes];
+        this.ids = new long[64];
+    }
+
+    public synchronized void add(long id, float[] v) {
+        if (v.length != dim) throw new IllegalArgumentException("expected dim " + dim + ", got " + v.length);
+        if (size == ids.length) grow();
+        quantizer.encode(v, codes, size * codeBytes);
+        ids[size++] = id;
+    }
+
+    private void grow() {
+        int cap = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, cap);
+        codes = Arrays.copyOf(codes, cap * codeBytes);
+    }
+
+    public synchronized int size() { return size; }
+
+    /**
+     * Top-k by approximate score. With rerankFactor &gt; 1 (requires an originals source) the
+     * best k * rerankFactor approximate hits are fetched and rescored at full precision
+     * before cutting to k.
+     */
+    public synchronized List<Hit> search(float[] query, int k, int rerankFactor) {
+        if (query.length != dim) throw new IllegalArgumentException("expected dim " + dim + ", got " + query.length);
+        if (rerankFactor > 1 && originals == null) throw new IllegalStateException("rerank needs an originals source");
+        long t0 = System.nanoTime();
+        int want = rerankFactor > 1 ? k * rerankFactor : k;
+        VectorQuantizer.Scorer scorer = quantizer.scorer(query);
+        TopK top = new TopK(Math.min(want, size));
+        for (int i=0;i<size;i++) top.offer(i, scorer.score(codes, i * codeBytes));
+        int[] slots = top.slots();
+        float[] scores = top.scores();
+        if (rerankFactor > 1) {
+            long r0 = System.nanoTime();
+            TopK exact = new TopK(Math.min(k, slots.length));
+            for (int s : slots) exact.offer(s, dot(query, originals.apply(ids[s]), 0));
+            slots = exact.slots();
+            scores = exact.scores();
+            RERANK_TIME.record(System.nanoTime() - r0);
+        }
+        List<Hit> out = toHits(slots, scores, k);
+        SEARCH_TIME.record(System.nanoTime() - t0);
+        return out;
+    }
+
+    /** Exact top-k over every original from the source; the recall baseline, not a serving path. */
+    public synchronized List<Hit> searchExact(float[] query, int k) {
+        if (originals == null) throw new IllegalStateException("exact search needs an originals source");
+        TopK top = new TopK(Math.min(k, size));
+        for (int i=0;i<size;i++) top.offer(i, dot(query, originals.apply(ids[i]), 0));
+        return toHits(top.slots(), top.scores(), k);
+    }
+
+    private List<Hit> toHits(int[] slots, float[] scores, int k) {
+        List<Hit> out = new ArrayList<>(Math.min(k, slots.length));
+        for (int i=0;i<slots.length && i<k;i++) out.add(new Hit(ids[slots[i]], scores[i]));
+        return out;
+    }
+
+    private static float dot(float[] q, float[] xs, int off) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (; i + 3 < q.length; i += 4) {
+            s0 += q[i] * xs[off + i];
+            s1 += q[i + 1] * xs[off + i + 1];
+            s2 += q[i + 2] * xs[off + i + 2];
+            s3 += q[i + 3] * xs[off + i + 3];
+        }
+        for (; i < q.length; i++) s0 += q[i] * xs[off + i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public synchronized Map<String,Object> stats() {
+        Map<String,Object> m = new LinkedHashMap<>();
+        m.put("vectors", size);
+        m.put("dim", dim);
+        m.put("codeBytesPerVector", codeBytes);
+        m.put("codeBytes", (long) size * codeBytes);
+        // code plus id, ignoring slack in the growable arrays
+        m.put("heapBytesPerVector", codeBytes + Long.BYTES);
+        m.put("compressionVsFloat32", (double) dim * Float.BYTES / codeBytes);
+        return m;
+    }
+
+    /** Bounded min-heap of (slot, score) on primitive arrays; slots() returns best first. */
+    private static final class TopK {
+        private final int[] slot;
+        private final float[] score;
+        private int n = 0;
+
+        TopK(int capacity) {
+            slot = new int[Math.max(0, capacity)];
+            score = new float[Math.max(0, capacity)];
+        }
+
+        void offer(int s, float v) {
+            if (slot.length == 0) return;
+            if (n < slot.length) {
+                int i = n++;
+                while (i > 0 && score[(i - 1) >> 1] > v) {
+                    int p = (i - 1) >> 1;
+                    slot[i] = slot[p]; score[i] = score[p];
+                    i = p;
+                }
+                slot[i] = s; score[i] = v;
+            } else if (v > score[0]) {
+                siftDown(s, v, n);
+            }
+        }
+
+        private void siftDown(int s, float v, int len) {
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= len) break;
+                if (c + 1 < len && score[c + 1] < score[c]) c++;
+                if (score[c] >= v) break;
+                slot[i] = slot[c]; score[i] = score[c];
+                i = c;
+            }
+            slot[i] = s; score[i] = v;
+        }
+
+        private int[] sortedSlots;
+        private float[] sortedScores;
+
+        // pops the heap smallest-first into the tail of the output arrays
+        private void drain() {
+            if (sortedSlots != null) return;
+            sortedSlots = new int[n];
+            sortedScores = new float[n];
+            for (int len = n; len > 0; len--) {
+                sortedSlots[len - 1] = slot[0];
+                sortedScores[len - 1] = score[0];
+                siftDown(slot[len - 1], score[len - 1], len - 1);
+            }
+        }
+
+        int[] slots() { drain(); return sortedSlots; }
+
+        float[] scores() { drain(); return sortedScores; }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
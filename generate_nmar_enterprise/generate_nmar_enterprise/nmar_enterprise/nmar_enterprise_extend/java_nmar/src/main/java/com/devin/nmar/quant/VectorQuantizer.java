@@ -0,0 +1,31 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.quant;
+
+/**
+ * VectorQuantizer - lossy fixed-size encoding of float vectors with asymmetric scoring:
+ * queries stay at full precision and are compared directly against stored codes.
+ * Scores are inner products, so cosine similarity needs normalized inputs.
+ */
+public interface VectorQuantizer {
+    int dim();
+
+    /** Bytes per encoded vector. */
+    int codeBytes();
+
+    void encode(float[] v, byte[] out, int off);
+
+    float[] decode(byte[] codes, int off);
+
+    /** Precomputes whatever the query needs so each stored code is scored in one pass. */
+    Scorer scorer(float[] query);
+
+    interface Scorer {
+        float score(byte[] codes, int off);
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
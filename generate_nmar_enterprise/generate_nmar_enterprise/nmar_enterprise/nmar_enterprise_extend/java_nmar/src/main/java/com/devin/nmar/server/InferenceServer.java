@@ -0,0 +1,362 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.server;
+
+import com.devin.nmar.admission.AdaptiveLimiter;
+import com.devin.nmar.admission.AdmissionController;
+import com.devin.nmar.admission.Deadline;
+import com.devin.nmar.admission.DeadlineExceededException;
+import com.devin.nmar.fusion.ModalityFusion;
+import com.devin.nmar.memory.MemoryAnchors;
+import com.devin.nmar.metrics.LatencyHistogram;
+import com.devin.nmar.metrics.Metrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * InferenceServer - serves /infer, /remember and /retrieve over the JDK HttpServer.
+ * Requests run on virtual threads when the runtime provides them, otherwise on a bounded
+ * pool. An AdmissionController caps in-flight requests at an adaptive, latency-driven
+ * limit (at most maxConcurrency) and answers 503 beyond it. Every admitted request gets a
+ * Deadline (requestTimeoutMillis, or a shorter X-Request-Timeout-Ms header) that is
+ * checked between stages; a request that runs out of budget is answered 504 instead of
+ * spending more work on a reply nobody is waiting for. /metrics bypasses admission.
+ * /infer accepts and returns JSON, or raw little-endian float32 vectors with
+ * Content-Type application/x-nmar-f32 (modality in the query string; the body length
+ * must be a multiple of 4). The binary form skips JSON number parsing and formatting and
+ * copies no vectors: the body is read once into a byte array that the encoder reads in
+ * place through a little-endian FloatBuffer view, and the result is streamed out through
+ * one small reused buffer instead of a body-sized array. Responses always carry a Content-Length so
+ * HTTP/1.1 connections stay alive between requests. /metrics renders the Metrics
+ * registry in Prometheus text format for pull-based scraping.
+ */
+public class InferenceServer {
+    private static final Logger LOG = Logger.getLogger(InferenceServer.class.getName());
+    public static final String F32_CONTENT_TYPE = "application/x-nmar-f32";
+    private static final int F32_CHUNK = 8192;
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final LatencyHistogram REQUEST_TIME = Metrics.timer("nmar_http_request_seconds", "HTTP request handling latency");
+    private static final Metrics.Counter REJECTED = Metrics.counter("nmar_http_rejected", "Requests answered 503 at the concurrency limit");
+
+    public static class Config {
+        public int port = 8090;
+        public int backlog = 1024;
+        public int maxConcurrency = 256;
+        public int poolThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 4);
+        public int maxBodyBytes = 4 << 20;
+        /** Per-request budget; 0 disables deadlines. */
+        public long requestTimeoutMillis = 2000;
+
+        /**
+         * Reads NMAR_HTTP_PORT, NMAR_HTTP_MAX_CONCURRENCY, NMAR_HTTP_MAX_BODY_BYTES and
+         * NMAR_HTTP_REQUEST_TIMEOUT_MS, keeping defaults for unset values.
+         */
+        public static Config fromEnv() {
+            Config c = new Config();
+            c.port = intEnv("NMAR_HTTP_PORT", c.port);
+            c.maxConcurrency = intEnv("NMAR_HTTP_MAX_CONCURRENCY", c.maxConcurrency);
+            c.maxBodyBytes = intEnv("NMAR_HTTP_MAX_BODY_BYTES", c.maxBodyBytes);
+            c.requestTimeoutMillis = intEnv("NMAR_HTTP_REQUEST_TIMEOUT_MS", (int) c.requestTimeoutMillis);
+            return c;
+        }
+
+        private static int intEnv(String name, int def) {
+            String v = System.getenv(name);
+            return v == null || v.isBlank() ? def : Integer.parseInt(v.trim());
+        }
+    }
+
+    private final ModalityFusion fusion;
+    private final MemoryAnchors memory;
+    private final Config cfg;
+    private final AdmissionController admission;
+    private HttpServer http;
+    private ExecutorService executor;
+
+    public InferenceServer(ModalityFusion fusion, MemoryAnchors memory, Config cfg) {
+        this.fusion = fusion;
+        this.memory = memory;
+        this.cfg = cfg;
+        AdmissionController.Config ac = new AdmissionController.Config();
+        ac.name = "server";
+        ac.limiter.maxLimit = Math.max(1, cfg.maxConcurrency);
+        ac.limiter.initialLimit = Math.min(ac.limiter.initialLimit, ac.limiter.maxLimit);
+        ac.limiter.minLimit = Math.min(ac.limiter.minLimit, ac.limiter.maxLimit);
+        this.admission = new AdmissionController(ac);
+    }
+
+    public synchronized void start() throws IOException {
+        if (http != null) return;
+        http = HttpServer.create(new InetSocketAddress(cfg.port), cfg.backlog);
+        executor = newExecutor(cfg.poolThreads);
+        http.setExecutor(executor);
+        http.createContext("/infer", new Endpoint("POST", true, this::infer));
+        http.createContext("/remember", new Endpoint("POST", true, this::remember));
+        http.createContext("/retrieve", new Endpoint("GET", true, this::retrieve));
+        http.createContext("/metrics", new Endpoint("GET", false, (ex, deadline) -> send(ex, 200, "text/plain; version=0.0.4; charset=utf-8",
+                Metrics.renderPrometheus().getBytes(StandardCharsets.UTF_8))));
+        http.start();
+        LOG.info(() -> "InferenceServer listening port=" + port() + " maxConcurrency=" + cfg.maxConcurrency
+                + " requestTimeoutMillis=" + cfg.requestTimeoutMillis);
+    }
+
+    public synchronized void stop() {
+        if (http == null) return;
+        http.stop(1);
+        executor.shutdown();
+        http = null;
+    }
+
+    public synchronized int port() {
+        return http == null ? -1 : http.getAddress().getPort();
+    }
+
+    /** Virtual thread per request on JDK 21+, looked up reflectively so the module still targets 17. */
+    private static ExecutorService newExecutor(int poolThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOG.fine("virtual threads unavailable, using pool of " + poolThreads);
+            return Executors.newFixedThreadPool(poolThreads, r -> {
+                Thread t = new Thread(r, "nmar-http");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private interface Action { void handle(HttpExchange ex, Deadline deadline) throws IOException; }
+
+    private final class Endpoint implements HttpHandler {
+        private final String method;
+        private final boolean admitted;
+        private final Action action;
+
+        Endpoint(String method, boolean admitted, Action action) { this.method = method; this.admitted = admitted; this.action = action; }
+
+        @Override
+        public void handle(HttpExchange ex) throws IOException {
+            try (ex) {
+                if (!method.equals(ex.getRequestMethod())) {
+                    sendError(ex, 405, "method not allowed");
+                    return;
+                }
+                Deadline deadline = deadline(ex);
+                AdaptiveLimiter.Permit permit = null;
+                if (admitted && (permit = admission.admit(deadline)) == null) {
+                    REJECTED.increment();
+                    ex.getResponseHeaders().set("Retry-After", "1");
+                    sendError(ex, 503, "concurrency limit reached");
+                    return;
+                }
+                long t0 = System.nanoTime();
+                try {
+                    action.handle(ex, deadline);
+                    if (permit != null) permit.success();
+                } catch (IllegalArgumentException e) {
+                    sendError(ex, 400, e.getMessage());
+                } catch (DeadlineExceededException e) {
+                    if (permit != null) permit.dropped();
+                    sendError(ex, 504, e.getMessage());
+                } catch (JsonProcessingException e) {
+                    // an IOException subtype, but the client's fault: answer instead of dropping the exchange
+                    sendError(ex, 400, "malformed JSON: " + e.getOriginalMessage());
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "request failed " + ex.getRequestURI(), e);
+                    sendError(ex, 500, "internal error");
+                } finally {
+                    REQUEST_TIME.record(System.nanoTime() - t0);
+                    if (permit != null) permit.ignore();
+                }
+            }
+        }
+    }
+
+    /** requestTimeoutMillis, shortened by a client-supplied X-Request-Timeout-Ms header. */
+    private Deadline deadline(HttpExchange ex) {
+        long millis = cfg.requestTimeoutMillis <= 0 ? Long.MAX_VALUE : cfg.requestTimeoutMillis;
+        String header = ex.getRequestHeaders().getFirst("X-Request-Timeout-Ms");
+        if (header != null) {
+            try {
+                millis = Math.min(millis, Math.max(0, Long.parseLong(header.trim())));
+            } catch (NumberFormatException ignored) {
+                // keep the server default
+            }
+        }
+        return millis == Long.MAX_VALUE ? Deadline.none() : Deadline.after(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private void infer(HttpExchange ex, Deadline deadline) throws IOException {
+        Map<String,String> query = query(ex);
+        boolean binaryIn = isF32(ex.getRequestHeaders().getFirst("Content-Type"));
+        boolean binaryOut = binaryIn || isF32(ex.getRequestHeaders().getFirst("Accept"));
+        ModalityFusion.Embedding emb;
+        if (binaryIn) {
+            byte[] body = readBody(ex);
+            if (body.length % Float.BYTES != 0) throw new IllegalArgumentException(F32_CONTENT_TYPE + " body of " + body.length + " bytes is not a whole number of float32 values");
+            FloatBuffer in = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            emb = encode(query.getOrDefault("modality", "sensor"), in, null, null, deadline);
+        } else {
+            JsonNode req = JSON.readTree(readBody(ex));
+            JsonNode payload = req.path("payload");
+            FloatBuffer in = null;
+            if (payload.path("input").isArray()) {
+                JsonNode arr = payload.get("input");
+                in = FloatBuffer.allocate(arr.size());
+                for (JsonNode v : arr) in.put((float) v.asDouble());
+                in.flip();
+            }
+            String text = payload.path("text").isTextual() ? payload.get("text").asText() : null;
+            byte[] image = payload.path("image").isTextual() ? Base64.getDecoder().decode(payload.get("image").asText()) : null;
+            emb = encode(req.path("modality").asText("sensor"), in, text, image, deadline);
+        }
+        if (binaryOut) {
+            sendF32(ex, emb.v);
+        } else {
+            Map<String,Object> resp = new LinkedHashMap<>();
+            resp.put("success", true);
+            float[] f = new float[emb.v.length];
+            for (int i=0;i<f.length;i++) f[i] = (float) emb.v[i];
+            resp.put("embedding", f);
+            sendJson(ex, 200, resp);
+        }
+    }
+
+    private ModalityFusion.Embedding encode(String modality, FloatBuffer input, String text, byte[] image, Deadline deadline) {
+        deadline.check("encode");
+        Map<String,ModalityFusion.Embedding> mods = new HashMap<>();
+        if (text != null) mods.put("text", fusion.encodeText(text));
+        if (image != null) mods.put("image", fusion.encodeImage(image, modality));
+        if (input != null) mods.put(mods.isEmpty() ? modality : "sensor", fusion.encodeSensor(input));
+        if (mods.isEmpty()) throw new IllegalArgumentException("payload needs input, text or image");
+        if (mods.size() > 1) deadline.check("fuse");
+        return mods.size() == 1 ? mods.values().iterator().next() : fusion.fuse(mods);
+    }
+
+    private void remember(HttpExchange ex, Deadline deadline) throws IOException {
+        JsonNode req = JSON.readTree(readBody(ex));
+        if (!req.path("key").isTextual() || !req.path("payload").isTextual()) throw new IllegalArgumentException("key and payload are required");
+        deadline.check("remember");
+        MemoryAnchors.Chunk c = memory.remember(req.get("key").asText(), req.get("payload").asText(), req.path("relevance").asDouble(0.5));
+        Map<String,Object> resp = new LinkedHashMap<>();
+        resp.put("success", true);
+        resp.put("id", c.id.toString());
+        sendJson(ex, 200, resp);
+    }
+
+    private void retrieve(HttpExchange ex, Deadline deadline) throws IOException {
+        Map<String,String> query = query(ex);
+        String q = query.get("q");
+        if (q == null) throw new IllegalArgumentException("q is required");
+        int limit = Integer.parseInt(query.getOrDefault("limit", "10"));
+        deadline.check("retrieve");
+        List<Map<String,Object>> chunks = new ArrayList<>();
+        for (MemoryAnchors.Chunk c : memory.retrieve(q, limit)) {
+            Map<String,Object> m = new LinkedHashMap<>();
+            m.put("id", c.id.toString());
+            m.put("key", c.key);
+            m.put("payload", c.payload);
+            m.put("relevance", c.relevance);
+            m.put("accesses", c.accesses);
+            chunks.add(m);
+        }
+        Map<String,Object> resp = new LinkedHashMap<>();
+        resp.put("success", true);
+        resp.put("chunks", chunks);
+        sendJson(ex, 200, resp);
+    }
+
+    private static boolean isF32(String header) {
+        return header != null && header.startsWith(F32_CONTENT_TYPE);
+    }
+
+    private byte[] readBody(HttpExchange ex) throws IOException {
+        String len = ex.getRequestHeaders().getFirst("Content-Length");
+        try (InputStream in = ex.getRequestBody()) {
+            if (len != null) {
+                long n = Long.parseLong(len);
+                if (n > cfg.maxBodyBytes) throw new IllegalArgumentException("body exceeds " + cfg.maxBodyBytes + " bytes");
+                return in.readNBytes((int) n);
+            }
+            byte[] body = in.readNBytes(cfg.maxBodyBytes + 1);
+            if (body.length > cfg.maxBodyBytes) throw new IllegalArgumentException("body exceeds " + cfg.maxBodyBytes + " bytes");
+            return body;
+        }
+    }
+
+    private static Map<String,String> query(HttpExchange ex) {
+        Map<String,String> out = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) return out;
+        for (String kv : raw.split("&")) {
+            int eq = kv.indexOf('=');
+            if (eq <= 0) continue;
+            out.put(URLDecoder.decode(kv.substring(0, eq), StandardCharsets.UTF_8), URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    private static void sendJson(HttpExchange ex, int status, Object body) throws IOException {
+        send(ex, status, "application/json", JSON.writeValueAsBytes(body));
+    }
+
+    private static void sendError(HttpExchange ex, int status, String message) throws IOException {
+        Map<String,Object> resp = new LinkedHashMap<>();
+        resp.put("success", false);
+        resp.put("message", message);
+        sendJson(ex, status, resp);
+    }
+
+    // streams v as little-endian float32 through one buffer of at most F32_CHUNK bytes, refilled per chunk
+    private static void sendF32(HttpExchange ex, double[] v) throws IOException {
+        long bytes = (long) v.length * Float.BYTES;
+        ex.getResponseHeaders().set("Content-Type", F32_CONTENT_TYPE);
+        ex.sendResponseHeaders(200, bytes == 0 ? -1 : bytes);
+        try (OutputStream out = ex.getResponseBody()) {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(F32_CHUNK, bytes)).order(ByteOrder.LITTLE_ENDIAN);
+            for (double d : v) {
+                if (!buf.hasRemaining()) {
+                    out.write(buf.array(), 0, buf.position());
+                    buf.clear();
+                }
+                buf.putFloat((float) d);
+            }
+            out.write(buf.array(), 0, buf.position());
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String contentType, byte[] body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,110 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveLimiterTest {
+    @Test
+    public void rejectsAtLimitAndBacksOffOnDrops() {
+        AdaptiveLimiter.Config cfg = new AdaptiveLimiter.Config();
+        cfg.initialLimit = 4;
+        AdaptiveLimiter limiter = new AdaptiveLimiter(cfg);
+        List<AdaptiveLimiter.Permit> held = new ArrayList<>();
+        for (int i=0;i<4;i++) held.add(limiter.tryAcquire());
+        assertNull(limiter.tryAcquire());
+        held.get(0).dropped();
+        held.get(0).success();
+        assertEquals(3, limiter.inFlight());
+        assertEquals(3, limiter.limit());
+        assertNull(limiter.tryAcquire());
+        for (AdaptiveLimiter.Permit p : held) p.ignore();
+        assertEquals(0, limiter.inFlight());
+    }
+
+    /** One client's next step in the simulation: retry admission, or complete {@code permit}. */
+    static final class Step {
+        final long at;
+        final long seq;
+        final AdaptiveLimiter.Permit permit;
+        final long admittedAt;
+
+        Step(long at, long seq, AdaptiveLimiter.Permit permit, long admittedAt) {
+            this.at = at;
+            this.seq = seq;
+            this.permit = permit;
+            this.admittedAt = admittedAt;
+        }
+    }
+
+    /**
+     * 32 closed-loop clients against a backend that serves 4 requests at a time, 2ms each,
+     * simulated on a virtual clock so the outcome is the same on every run. Rejected
+     * clients retry after 1ms. Without a limiter all 32 would queue for ~16ms each; the
+     * limit should settle a few requests above 4 (Vegas keeps 3-6 queued), keeping the
+     * backend busy (goodput near 2000/s) at well under half the unlimited latency.
+     */
+    @Test
+    public void limitConvergesToBackendCapacityOnAVirtualClock() {
+        final int clients = 32;
+        final int servers = 4;
+        final long service = TimeUnit.MILLISECONDS.toNanos(2);
+        final long retry = TimeUnit.MILLISECONDS.toNanos(1);
+        final long horizon = TimeUnit.SECONDS.toNanos(4);
+        long[] now = {0};
+        AdaptiveLimiter.Config cfg = new AdaptiveLimiter.Config();
+        cfg.initialLimit = clients;
+        cfg.nanoClock = () -> now[0];
+        AdaptiveLimiter limiter = new AdaptiveLimiter(cfg);
+
+        long[] serverFreeAt = new long[servers];
+        PriorityQueue<Step> steps = new PriorityQueue<>(
+            Comparator.comparingLong((Step st) -> st.at).thenComparingLong(st -> st.seq));
+        long seq = 0;
+        for (int c=0;c<clients;c++) steps.add(new Step(0, seq++, null, 0));
+        long completed = 0;
+        long latencyNanos = 0;
+        while (!steps.isEmpty() && steps.peek().at < horizon) {
+            Step st = steps.poll();
+            now[0] = st.at;
+            boolean measuring = now[0] >= horizon / 2;
+            if (st.permit != null) {
+                st.permit.success();
+                if (measuring) {
+                    completed++;
+                    latencyNanos += now[0] - st.admittedAt;
+                }
+            }
+            AdaptiveLimiter.Permit p = limiter.tryAcquire();
+            if (p == null) {
+                steps.add(new Step(now[0] + retry, seq++, null, 0));
+                continue;
+            }
+            int server = 0;
+            for (int s=1;s<servers;s++) if (serverFreeAt[s] < serverFreeAt[server]) server = s;
+            long done = Math.max(now[0], serverFreeAt[server]) + service;
+            serverFreeAt[server] = done;
+            steps.add(new Step(done, seq++, p, now[0]));
+        }
+
+        double seconds = (horizon / 2) / 1e9;
+        double goodput = completed / seconds;
+        double meanLatencyMillis = latencyNanos / (double) completed / 1e6;
+        assertTrue(limiter.limit() >= servers && limiter.limit() < 12, "limit " + limiter.limit());
+        assertTrue(goodput >= 0.9 * servers * 1e9 / service, "goodput " + goodput + "/s");
+        assertTrue(meanLatencyMillis < 6.0, "mean latency " + meanLatencyMillis + "ms");
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
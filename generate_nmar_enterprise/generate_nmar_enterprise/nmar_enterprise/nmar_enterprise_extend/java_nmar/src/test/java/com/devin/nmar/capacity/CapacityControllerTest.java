@@ -0,0 +1,103 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.capacity;
+
+import com.devin.nmar.core.NeuroMesh;
+import com.devin.nmar.memory.MemoryAnchors;
+import com.devin.nmar.metrics.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CapacityControllerTest {
+    static NeuroMesh mesh(int nodes) {
+        NeuroMesh mesh = new NeuroMesh(0.0, 1 << 20);
+        NeuroMesh.Node prev = null;
+        for (int i=0;i<nodes;i++) {
+            NeuroMesh.Node n = mesh.createNode("n:" + i, i / (double) nodes);
+            if (prev != null) mesh.addEdge(prev.id, n.id, 0.5);
+            prev = n;
+        }
+        return mesh;
+    }
+
+    static MemoryAnchors memory(int chunks) {
+        MemoryAnchors memory = new MemoryAnchors(1 << 20, 0.01);
+        String payload = "x".repeat(500);
+        for (int i=0;i<chunks;i++) memory.remember("k:" + i, payload, i / (double) chunks);
+        return memory;
+    }
+
+    @Test
+    public void capsFollowTheBudgetAndEvictLowestFirst() {
+        NeuroMesh mesh = mesh(4000);
+        MemoryAnchors memory = memory(4000);
+        CapacityController.Config cfg = new CapacityController.Config();
+        cfg.budgetBytes = 1 << 20;
+        cfg.meshShare = 0.5;
+        cfg.criticalHeapFraction = 1.0;
+        try (CapacityController c = new CapacityController(mesh, memory, cfg)) {
+            c.adjust();
+            assertTrue(c.meshBytes() > 0 && c.memoryBytes() > c.meshBytes());
+            // half a MB at ~360 bytes per node with one edge, ~710 bytes per 500-char chunk
+            assertTrue(mesh.maxNodes() > 1000 && mesh.maxNodes() < 2000, "maxNodes " + mesh.maxNodes());
+            assertTrue(memory.maxChunks() > 500 && memory.maxChunks() < 1000, "maxChunks " + memory.maxChunks());
+            assertEquals(mesh.maxNodes(), mesh.nodeCount());
+            assertEquals(memory.maxChunks(), memory.size());
+            assertNull(mesh.getNodeByKey("n:0"));
+            assertNotNull(mesh.getNodeByKey("n:3999"));
+            List<MemoryAnchors.Chunk> top = memory.retrieve("k:3999", 1);
+            assertEquals(1, top.size());
+            String prom = Metrics.renderPrometheus();
+            assertTrue(prom.contains("nmar_capacity_default_budget_bytes " + cfg.budgetBytes));
+            assertTrue(prom.contains("nmar_capacity_default_max_nodes " + mesh.maxNodes()));
+        }
+        assertFalse(Metrics.renderPrometheus().contains("nmar_capacity_default_"));
+    }
+
+    @Test
+    public void loweredCapIsWorkedOffInBatches() {
+        NeuroMesh mesh = mesh(1000);
+        mesh.setMaxNodes(100);
+        assertEquals(10, mesh.trimToCapacity(10));
+        assertEquals(990, mesh.nodeCount());
+        for (int i=0;i<10;i++) assertNull(mesh.getNodeByKey("n:" + i));
+        // a single insert only takes one batch off the overshoot
+        mesh.createNode("fresh", 1.0);
+        assertEquals(991 - NeuroMesh.EVICTION_BATCH, mesh.nodeCount());
+        while (mesh.trimToCapacity(100) > 0) { }
+        assertEquals(100, mesh.nodeCount());
+
+        MemoryAnchors memory = memory(1000);
+        memory.setMaxChunks(200);
+        assertEquals(50, memory.trimToCapacity(50));
+        // an insert above the lowered cap only clears its own overflow
+        memory.remember("k:fresh", "x", 0.0);
+        assertEquals(950, memory.size());
+        while (memory.trimToCapacity(100) > 0) { }
+        assertEquals(200, memory.size());
+        assertTrue(memory.retrieve("k:799", 1).isEmpty());
+        assertEquals(1, memory.retrieve("k:800", 1).size());
+    }
+
+    @Test
+    public void heapPressureShrinksTheBudget() {
+        NeuroMesh mesh = mesh(500);
+        CapacityController.Config cfg = new CapacityController.Config();
+        cfg.budgetBytes = 1 << 20;
+        cfg.criticalHeapFraction = 0.0;
+        try (CapacityController c = new CapacityController(mesh, null, cfg).start()) {
+            c.adjust();
+            int first = mesh.maxNodes();
+            c.adjust();
+            assertTrue(mesh.maxNodes() < first, first + " -> " + mesh.maxNodes());
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,200 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.core;
+
+import com.devin.nmar.learning.AdaptiveLearner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MeshReplicaTest {
+    @TempDir
+    Path dir;
+
+    // drives learning, propagation, pruning and maxNodes eviction on a writer mesh
+    static void workload(NeuroMesh mesh, int rounds) {
+        AdaptiveLearner learner = new AdaptiveLearner(mesh, 100);
+        Random r = new Random(11);
+        for (int i=0;i<rounds;i++) {
+            List<String> keys = new ArrayList<>();
+            for (int j=0;j<4;j++) keys.add("sem:" + r.nextInt(60));
+            learner.apply(keys, r.nextDouble() - 0.3);
+            mesh.getOrCreate("idle:" + i, 0.0);
+            if (i % 7 == 0) mesh.propagate(0.05, 6);
+        }
+    }
+
+    static void assertSameMesh(NeuroMesh expected, NeuroMesh actual) {
+        assertEquals(expected.snapshot(), actual.snapshot());
+        List<String> keys = new ArrayList<>(List.of("seed", "fresh"));
+        for (int i=0;i<60;i++) { keys.add("sem:" + i); keys.add("idle:" + i); }
+        for (String k : keys) {
+            NeuroMesh.Node e = expected.getNodeByKey(k), a = actual.getNodeByKey(k);
+            if (e == null) { assertNull(a, k); continue; }
+            assertNotNull(a, k);
+            assertEquals(e.id, a.id, k);
+            assertEquals(e.activation, a.activation, 0.0, k);
+            assertEquals(e.edges, a.edges, k);
+        }
+    }
+
+    @Test
+    public void replicaConvergesToWriter() {
+        Path log = dir.resolve("mesh.log");
+        NeuroMesh writer = new NeuroMesh(0.05, 48);
+        writer.getOrCreate("seed", 1.0);
+        try (MeshDeltaLog out = new MeshDeltaLog(log, 5);
+             MeshReplica replica = new MeshReplica(log, 0.05)) {
+            writer.setMutationListener(out);
+            workload(writer, 60);
+            Map<Long, Double> expected = writer.propagatedActivations(0.05, 6);
+            out.flush();
+            assertTrue(replica.poll() > 0);
+            assertSameMesh(writer, replica.mesh());
+            assertEquals(expected, replica.mesh().propagatedActivations(0.05, 6));
+            // a restarted writer re-attaches with a reset + snapshot on the same file
+            writer.setMutationListener(null);
+            NeuroMesh restarted = new NeuroMesh(0.05, 48);
+            restarted.getOrCreate("fresh", 0.7);
+            try (MeshDeltaLog again = new MeshDeltaLog(log, 5)) {
+                restarted.setMutationListener(again);
+                again.flush();
+                replica.poll();
+                assertSameMesh(restarted, replica.mesh());
+                restarted.setMutationListener(null);
+            }
+            assertNull(replica.mesh().getNodeByKey("seed"));
+
+            // propagation reads leave the replica untouched; local mutation is refused
+            Map<String,Object> before = replica.mesh().snapshot();
+            Map<Long, Double> act = replica.mesh().propagatedActivations(0.05, 6);
+            assertEquals(before.get("nodeCount"), act.size());
+            assertEquals(before, replica.mesh().snapshot());
+            assertThrows(IllegalStateException.class, () -> replica.mesh().propagate(0.05, 6));
+            assertThrows(IllegalStateException.class, () -> replica.mesh().getOrCreate("local", 1.0));
+        }
+        // a replica started late replays the whole file
+        try (MeshReplica late = new MeshReplica(log, 0.05)) {
+            late.poll();
+            assertNotNull(late.mesh().getNodeByKey("fresh"));
+            assertEquals(0, late.lagBytes());
+        }
+    }
+
+    @Test
+    public void corruptFrameStopsReplicaInsteadOfStalling() throws Exception {
+        Path log = dir.resolve("mesh.log");
+        NeuroMesh writer = new NeuroMesh(0.05, 48);
+        MeshDeltaLog out = new MeshDeltaLog(log, 5);
+        try (out) {
+            writer.setMutationListener(out);
+            writer.getOrCreate("a", 1.0);
+            out.flush();
+            long intact = Files.size(log);
+            writer.getOrCreate("b", 1.0);
+            writer.setMutationListener(null);
+            out.flush();
+            // flip one byte inside the body of the last frame
+            try (FileChannel ch = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer one = ByteBuffer.allocate(1);
+                ch.read(one, intact + 10);
+                one.put(0, (byte) ~one.get(0)).rewind();
+                ch.write(one, intact + 10);
+            }
+        }
+        // mutations after close are dropped, not thrown into the writer's lock
+        writer.setMutationListener(out);
+        writer.getOrCreate("c", 1.0);
+        try (MeshReplica replica = new MeshReplica(log, 0.05)) {
+            for (int i=1;i<MeshReplica.CORRUPT_RETRIES;i++) replica.poll();
+            assertNotNull(replica.mesh().getNodeByKey("a"));
+            assertNull(replica.failure());
+            assertThrows(IllegalStateException.class, replica::poll);
+            assertNotNull(replica.failure());
+            assertThrows(IllegalStateException.class, replica::poll);
+        }
+    }
+
+    @Test
+    public void restartedWriterTruncatesTornTail() throws Exception {
+        Path log = dir.resolve("mesh.log");
+        NeuroMesh writer = new NeuroMesh(0.05, 48);
+        writer.getOrCreate("seed", 1.0);
+        try (MeshDeltaLog out = new MeshDeltaLog(log, 5)) {
+            writer.setMutationListener(out);
+            workload(writer, 20);
+            writer.setMutationListener(null);
+        }
+        long intact = Files.size(log);
+        // a crashed writer left a frame header and part of its body
+        try (FileChannel ch = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer torn = ByteBuffer.allocate(18).putInt(100).putInt(0x5eed).put(new byte[10]);
+            ch.write(torn.flip());
+        }
+        try (MeshReplica replica = new MeshReplica(log, 0.05)) {
+            assertTrue(replica.poll() > 0);
+            assertSameMesh(writer, replica.mesh());
+            assertTrue(replica.lagBytes() > 0);
+
+            NeuroMesh restarted = new NeuroMesh(0.05, 48);
+            restarted.getOrCreate("fresh", 0.7);
+            try (MeshDeltaLog again = new MeshDeltaLog(log, 5)) {
+                assertEquals(intact, Files.size(log));
+                restarted.setMutationListener(again);
+                workload(restarted, 10);
+                again.flush();
+                assertTrue(replica.poll() > 0);
+                assertEquals(0, replica.lagBytes());
+                assertNull(replica.failure());
+                assertSameMesh(restarted, replica.mesh());
+                restarted.setMutationListener(null);
+            }
+        }
+    }
+
+    /** Writer in its own JVM; the replica in this JVM tails the shared file. */
+    @Test
+    public void replicaTailsWriterProcess() throws Exception {
+        Path log = dir.resolve("mesh.log");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), WriterProcess.class.getName(), log.toString())
+            .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try (MeshReplica replica = new MeshReplica(log, 0.05).start(2)) {
+            assertTrue(p.waitFor(60, TimeUnit.SECONDS));
+            assertEquals(0, p.exitValue());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (replica.lagBytes() > 0 && System.nanoTime() < deadline) Thread.sleep(5);
+            NeuroMesh expected = new NeuroMesh(0.05, 48);
+            expected.getOrCreate("seed", 1.0);
+            workload(expected, 60);
+            assertSameMesh(expected, replica.mesh());
+        }
+    }
+
+    public static class WriterProcess {
+        public static void main(String[] args) {
+            NeuroMesh mesh = new NeuroMesh(0.05, 48);
+            mesh.getOrCreate("seed", 1.0);
+            try (MeshDeltaLog out = new MeshDeltaLog(Paths.get(args[0]), 2)) {
+                mesh.setMutationListener(out);
+                workload(mesh, 60);
+                mesh.setMutationListener(null);
+            }
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
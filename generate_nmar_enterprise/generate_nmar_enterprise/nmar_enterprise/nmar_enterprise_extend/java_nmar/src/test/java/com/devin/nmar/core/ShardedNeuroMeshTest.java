@@ -0,0 +1,108 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedNeuroMeshTest {
+    @Test
+    public void propagationMatchesSingleMesh() {
+        NeuroMesh single = new NeuroMesh(0.01, 4096);
+        try (ShardedNeuroMesh sharded = new ShardedNeuroMesh(0.01, 4096, 4)) {
+            List<String> keys = new ArrayList<>();
+            for (int i=0;i<64;i++) keys.add("sem:" + i);
+            List<NeuroMesh.Node> sn = sharded.getOrCreateAll(keys, 0.5);
+            for (String k : keys) single.getOrCreate(k, 0.5);
+
+            Random r = new Random(7);
+            for (int e=0;e<256;e++) {
+                int a = r.nextInt(keys.size()), b = r.nextInt(keys.size());
+                if (a == b) continue;
+                double w = 0.05 + r.nextDouble() * 0.1;
+                single.addEdge(single.getNodeByKey(keys.get(a)).id, single.getNodeByKey(keys.get(b)).id, w);
+                sharded.addEdge(sn.get(a).id, sn.get(b).id, w);
+            }
+            single.propagate(0.04, 6);
+            sharded.propagate(0.04, 6);
+
+            assertTrue((Integer) sharded.snapshot().get("boundaryEdgeCount") > 0);
+            for (String k : keys) {
+                assertEquals(single.getNodeByKey(k).activation, sharded.getNodeByKey(k).activation, 1e-9, k);
+            }
+        }
+    }
+
+    @Test
+    public void pruneMatchesSingleMesh() {
+        NeuroMesh single = new NeuroMesh(0.01, 4096);
+        try (ShardedNeuroMesh sharded = new ShardedNeuroMesh(0.01, 4096, 4)) {
+            List<String> keys = new ArrayList<>();
+            Random r = new Random(3);
+            List<double[]> edges = new ArrayList<>();
+            // live nodes with strong and weak edges between them
+            for (int i=0;i<48;i++) keys.add("sem:" + i);
+            for (int e=0;e<160;e++) {
+                int a = r.nextInt(48), b = r.nextInt(48);
+                if (a != b) edges.add(new double[]{a, b, e % 4 == 0 ? 0.001 : 0.05 + r.nextDouble() * 0.1});
+            }
+            // idle targets fed only by idle sources: pruned, leaving the source's edge dangling
+            for (int i=0;i<16;i++) {
+                keys.add("src:" + i);
+                keys.add("idle:" + i);
+                edges.add(new double[]{keys.size() - 2, keys.size() - 1, 0.5});
+            }
+            for (String k : keys) {
+                double a = k.startsWith("sem:") ? 0.5 : 0.0;
+                single.getOrCreate(k, a);
+                sharded.getOrCreate(k, a);
+            }
+            for (double[] e : edges) {
+                String from = keys.get((int) e[0]), to = keys.get((int) e[1]);
+                single.addEdge(single.getNodeByKey(from).id, single.getNodeByKey(to).id, e[2]);
+                sharded.addEdge(sharded.getNodeByKey(from).id, sharded.getNodeByKey(to).id, e[2]);
+            }
+            Map<String,Object> before = sharded.snapshot();
+            assertEquals(single.snapshot().get("edgeCount"), before.get("edgeCount"));
+
+            single.propagate(0.04, 6);
+            sharded.propagate(0.04, 6);
+
+            for (int i=0;i<16;i++) {
+                assertNull(single.getNodeByKey("idle:" + i));
+                assertNull(sharded.getNodeByKey("idle:" + i));
+            }
+            Map<String,Object> after = sharded.snapshot();
+            assertEquals(single.snapshot().get("nodeCount"), after.get("nodeCount"));
+            assertEquals(single.snapshot().get("edgeCount"), after.get("edgeCount"));
+            assertTrue((Integer) after.get("boundaryEdgeCount") > 0);
+            for (String k : keys) {
+                NeuroMesh.Node s = single.getNodeByKey(k), d = sharded.getNodeByKey(k);
+                if (s == null) { assertNull(d, k); continue; }
+                assertNotNull(d, k);
+                assertEquals(s.activation, d.activation, 1e-9, k);
+            }
+        }
+    }
+
+    @Test
+    public void idsRouteBackToOwningShard() {
+        try (ShardedNeuroMesh sharded = new ShardedNeuroMesh(0.01, 1024, 3)) {
+            for (int i=0;i<30;i++) {
+                String k = "k" + i;
+                NeuroMesh.Node n = sharded.getOrCreate(k, 0.2);
+                assertEquals(sharded.shardOf(k), sharded.shardOfId(n.id));
+                assertSame(n, sharded.getOrCreate(k, 0.9));
+            }
+            assertEquals(30, sharded.snapshot().get("nodeCount"));
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
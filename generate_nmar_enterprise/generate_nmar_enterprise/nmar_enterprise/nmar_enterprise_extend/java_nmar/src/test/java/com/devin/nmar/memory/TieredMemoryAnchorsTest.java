@@ -0,0 +1,101 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TieredMemoryAnchorsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void evictedChunksStayRetrievableAcrossRestart() {
+        Set<UUID> ids = new HashSet<>();
+        String pad = " ".repeat(512);
+        try (TieredMemoryAnchors mem = new TieredMemoryAnchors(dir, 100, 0.01, 1 << 16, 1 << 20)) {
+            for (int i=0;i<300;i++) ids.add(mem.remember("k" + i, "payload " + i + (i % 3 == 0 ? " fizz" : "") + pad, i / 300.0).id);
+            Map<String,Object> stats = mem.tierStats();
+            assertTrue((Integer) stats.get("hotChunks") <= 100);
+            assertEquals(300, (Integer) stats.get("hotChunks") + (Integer) stats.get("coldChunks"));
+            assertTrue((Integer) stats.get("coldSegments") > 1);
+
+            List<MemoryAnchors.Chunk> cold = mem.retrieve("payload 7 ", 5);
+            assertEquals(1, cold.size());
+            assertEquals("k7", cold.get(0).key);
+            // promotion leaves the cold copy behind as a dead frame
+            assertTrue((Long) mem.tierStats().get("coldDeadBytes") > 0);
+            assertEquals(100, mem.retrieve("fizz", 1000).size());
+        }
+        try (TieredMemoryAnchors mem = new TieredMemoryAnchors(dir, 100, 0.01, 1 << 16, 1 << 20)) {
+            Map<String,Object> stats = mem.tierStats();
+            assertEquals(300, (Integer) stats.get("hotChunks") + (Integer) stats.get("coldChunks"));
+            Set<UUID> found = new HashSet<>();
+            for (MemoryAnchors.Chunk c : mem.retrieve("payload", 1000)) found.add(c.id);
+            assertEquals(ids, found);
+        }
+    }
+
+    @Test
+    public void sealedSegmentsAreScannedThroughTheirCachedMapping() throws Exception {
+        String pad = " ".repeat(512);
+        try (ColdSegmentStore cold = new ColdSegmentStore(dir, 1 << 16)) {
+            List<MemoryAnchors.Chunk> chunks = new ArrayList<>();
+            for (int i=0;i<300;i++) chunks.add(new MemoryAnchors.Chunk("k" + i, "payload " + i + pad, 0.5));
+            cold.append(chunks);
+            assertTrue(cold.segmentCount() > 2);
+            // a sealed segment that had to be re-opened per scan would now fail to read
+            Files.delete(dir.resolve("seg-000001.dat"));
+            List<MemoryAnchors.Chunk> out = new ArrayList<>();
+            assertEquals(300, cold.topMatches("payload".getBytes(StandardCharsets.UTF_8), 300, (r, c, a) -> r, out));
+            assertEquals(300, out.size());
+        }
+    }
+
+    @Test
+    public void coldRetrieveDecodesOnlyTheTopLimit() {
+        try (TieredMemoryAnchors mem = new TieredMemoryAnchors(dir, 100, 0.0, 1 << 16, 1 << 20)) {
+            for (int i=0;i<300;i++) mem.remember("k" + i, "payload " + i + (i < 100 ? " low" : ""), i / 300.0);
+            assertTrue((Integer) mem.tierStats().get("coldChunks") >= 100);
+            List<String> keys = new ArrayList<>();
+            for (MemoryAnchors.Chunk c : mem.retrieve(" low", 5)) keys.add(c.key);
+            assertEquals(List.of("k99", "k98", "k97", "k96", "k95"), keys);
+            assertEquals(5, mem.hotChunks().stream().filter(c -> c.payload.endsWith(" low")).count());
+        }
+    }
+
+    @Test
+    public void tornWalTailIsDropped() throws Exception {
+        UUID kept;
+        try (TieredMemoryAnchors mem = new TieredMemoryAnchors(dir, 100, 0.0)) {
+            kept = mem.remember("alpha", "first", 1.0).id;
+        }
+        try (FileChannel ch = FileChannel.open(dir.resolve("wal.log"), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 7, 7}));
+        }
+        try (TieredMemoryAnchors mem = new TieredMemoryAnchors(dir, 100, 0.0)) {
+            List<MemoryAnchors.Chunk> hits = mem.retrieve("alpha", 10);
+            assertEquals(1, hits.size());
+            assertEquals(kept, hits.get(0).id);
+            mem.remember("beta", "second", 1.0);
+        }
+        try (TieredMemoryAnchors mem = new TieredMemoryAnchors(dir, 100, 0.0)) {
+            assertEquals(2, mem.retrieve("", 10).size());
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
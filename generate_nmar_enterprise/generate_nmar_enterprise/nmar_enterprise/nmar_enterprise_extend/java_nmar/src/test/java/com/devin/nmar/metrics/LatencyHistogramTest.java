@@ -0,0 +1,33 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+    @Test
+    public void percentilesStayWithinBucketPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v=1; v<=100_000; v++) h.record(v * 1000);
+        assertEquals(100_000, h.count());
+        assertEquals(100_000_000L, h.max());
+        assertEquals(50_000_000, h.percentile(0.5), 50_000_000 * 0.035);
+        assertEquals(99_000_000, h.percentile(0.99), 99_000_000 * 0.035);
+        assertEquals(100_000_000L, h.percentile(1.0));
+    }
+
+    @Test
+    public void bucketsCoverTheFullRange() {
+        for (long v : new long[]{0, 1, 31, 32, 33, 1000, 1L << 40, Long.MAX_VALUE}) {
+            int idx = LatencyHistogram.indexOf(v);
+            assertTrue(LatencyHistogram.upperBound(idx) >= v, "value " + v);
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
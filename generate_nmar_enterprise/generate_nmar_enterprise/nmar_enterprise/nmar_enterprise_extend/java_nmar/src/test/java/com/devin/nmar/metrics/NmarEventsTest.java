@@ -0,0 +1,61 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.metrics;
+
+import com.devin.nmar.core.NeuroMesh;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NmarEventsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void eventsAreOnlyAllocatedWhileRecording() {
+        assertNull(NmarEvents.meshOperation());
+        try (Recording r = new Recording()) {
+            r.enable("com.devin.nmar.MeshOperation");
+            r.start();
+            assertNotNull(NmarEvents.meshOperation());
+        }
+        assertNull(NmarEvents.meshOperation());
+    }
+
+    @Test
+    public void pruneAndEvictReportRemovedNodes() throws Exception {
+        Path file = dir.resolve("mesh.jfr");
+        try (Recording r = new Recording()) {
+            r.enable("com.devin.nmar.MeshOperation").withThreshold(Duration.ZERO);
+            r.start();
+            NeuroMesh mesh = new NeuroMesh(0.05, 16);
+            for (int i=0;i<20;i++) mesh.createNode("n" + i, i < 10 ? 0.0 : 1.0);
+            mesh.propagate(0.1, 1);
+            r.stop();
+            r.dump(file);
+        }
+        Map<String,Integer> removed = new HashMap<>();
+        for (RecordedEvent e : RecordingFile.readAllEvents(file)) {
+            if (e.getEventType().getName().equals("com.devin.nmar.MeshOperation")) {
+                removed.merge(e.getString("operation"), e.getInt("removed"), Integer::sum);
+            }
+        }
+        assertEquals(4, removed.get("evict"));
+        assertTrue(removed.get("prune") > 0);
+        assertEquals(0, removed.get("propagate"));
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,98 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.persistence;
+
+import com.devin.nmar.admission.Deadline;
+import com.devin.nmar.admission.DeadlineExceededException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryDAOTest {
+    /** Accepts connections and never answers, so a login hangs until its timeout. */
+    static final class SilentServer implements AutoCloseable {
+        final ServerSocket socket = new ServerSocket(0);
+        final List<Socket> accepted = new ArrayList<>();
+        final CountDownLatch connected = new CountDownLatch(1);
+
+        SilentServer() throws IOException {
+            Thread t = new Thread(() -> {
+                try {
+                    while (true) {
+                        Socket s = socket.accept();
+                        synchronized (accepted) { accepted.add(s); }
+                        connected.countDown();
+                    }
+                } catch (Exception closed) {
+                    // server closed
+                }
+            }, "silent-db");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        String url() { return "jdbc:postgresql://127.0.0.1:" + socket.getLocalPort() + "/nmar"; }
+
+        /** Drops the listener and every accepted connection, failing whatever is blocked on them. */
+        void hangUp() throws IOException {
+            socket.close();
+            synchronized (accepted) { for (Socket s : accepted) s.close(); }
+        }
+
+        @Override
+        public void close() throws IOException { hangUp(); }
+    }
+
+    @Test
+    public void stalledLoginIsBoundedByTheDeadline() throws Exception {
+        try (SilentServer db = new SilentServer()) {
+            MemoryDAO dao = new MemoryDAO(db.url(), "nmar", "nmar");
+            long t0 = System.nanoTime();
+            assertThrows(DeadlineExceededException.class,
+                () -> dao.nearestNeighbors(new float[]{1f, 0f}, 3, Deadline.after(500, TimeUnit.MILLISECONDS)));
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+            assertTrue(millis < 5000, "login took " + millis + "ms");
+        }
+    }
+
+    @Test
+    public void saveMemoryHonoursTheDeadline() throws Exception {
+        try (SilentServer db = new SilentServer()) {
+            MemoryDAO dao = new MemoryDAO(db.url(), "nmar", "nmar");
+            long t0 = System.nanoTime();
+            assertThrows(DeadlineExceededException.class,
+                () -> dao.saveMemory("k", "payload", 0.5, new float[]{1f, 0f}, Deadline.after(500, TimeUnit.MILLISECONDS)));
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+            assertTrue(millis < 5000, "save took " + millis + "ms");
+        }
+    }
+
+    @Test
+    public void waitingForABusySlotIsADeadlineDrop() throws Exception {
+        try (SilentServer db = new SilentServer()) {
+            MemoryDAO dao = new MemoryDAO(db.url(), "nmar", "nmar", 1);
+            CompletableFuture<Object> holder = CompletableFuture.supplyAsync(
+                () -> dao.nearestNeighbors(new float[]{1f, 0f}, 3, Deadline.after(3, TimeUnit.SECONDS)));
+            assertTrue(db.connected.await(5, TimeUnit.SECONDS));
+            DeadlineExceededException e = assertThrows(DeadlineExceededException.class,
+                () -> dao.nearestNeighbors(new float[]{1f, 0f}, 3, Deadline.after(100, TimeUnit.MILLISECONDS)));
+            assertTrue(e.getMessage().contains("busy"), e.getMessage());
+            db.hangUp();
+            assertThrows(Exception.class, holder::join);
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,216 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.pipeline;
+
+import com.devin.nmar.admission.AdaptiveLimiter;
+import com.devin.nmar.admission.AdmissionController;
+import com.devin.nmar.admission.Deadline;
+import com.devin.nmar.admission.DeadlineExceededException;
+import com.devin.nmar.core.NeuroMesh;
+import com.devin.nmar.fusion.ModalityFusion;
+import com.devin.nmar.learning.AdaptiveLearner;
+import com.devin.nmar.memory.MemoryAnchors;
+import com.devin.nmar.meta.MetaReasoner;
+import com.devin.nmar.metrics.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NmarPipelineTest {
+    static PipelineTask climate(int i) {
+        return new PipelineTask("request " + i + " about coastal flooding risk", new byte[]{1,2,(byte)i}, "sat",
+                new double[]{0.3, 0.2}, "climate:" + i, "Recommend adaptation funding and coastal managed retreat studies.", 0.8);
+    }
+
+    static void assertQueuesBounded(NmarPipeline p) {
+        for (Object s : p.stats().values()) {
+            Map<?,?> m = (Map<?,?>) s;
+            assertTrue((Integer) m.get("queueDepth") <= (Integer) m.get("queueCapacity"), m.toString());
+        }
+    }
+
+    @Test
+    public void runsEveryStageUnderBackpressure() throws Exception {
+        NeuroMesh mesh = new NeuroMesh(0.01, 1024);
+        NmarPipeline.Config cfg = new NmarPipeline.Config();
+        cfg.queueCapacity = 4;
+        List<CompletableFuture<PipelineTask>> futures = new ArrayList<>();
+        try (NmarPipeline p = new NmarPipeline(mesh, new ModalityFusion(64), new MemoryAnchors(2000, 0.01),
+                new MetaReasoner(), new AdaptiveLearner(mesh, 100), null, cfg)) {
+            int next = 0;
+            PipelineTask refused = null;
+            // the mesh stage waits on the monitor held here, so the bounded queues ahead of it fill up
+            synchronized (mesh) {
+                while (refused == null && next < 100) {
+                    PipelineTask t = climate(next++);
+                    CompletableFuture<PipelineTask> f = p.trySubmit(t, 50, TimeUnit.MILLISECONDS);
+                    if (f == null) refused = t;
+                    else futures.add(f);
+                }
+                assertNotNull(refused, "producer was never held back");
+                assertQueuesBounded(p);
+            }
+            futures.add(p.submit(refused));
+            while (next < 100) {
+                futures.add(p.submit(climate(next++)));
+                assertQueuesBounded(p);
+            }
+            for (CompletableFuture<PipelineTask> f : futures) {
+                PipelineTask t = f.get(30, TimeUnit.SECONDS);
+                assertEquals(8, t.keys().size());
+                assertNotNull(t.chunk());
+                assertNotNull(t.feedback());
+            }
+            Map<String,Object> stats = p.stats();
+            assertEquals(List.of("encode", "fuse", "mesh", "memory", "evaluate", "learn"), new ArrayList<>(stats.keySet()));
+            for (Object s : stats.values()) assertEquals(100L, ((Map<?,?>) s).get("processed"));
+        }
+    }
+
+    @Test
+    public void timedOutTrySubmitLeavesTheTaskReusable() throws Exception {
+        NeuroMesh mesh = new NeuroMesh(0.01, 1024);
+        AdmissionController.Config ac = new AdmissionController.Config();
+        ac.limiter.initialLimit = 200;
+        AdmissionController admission = new AdmissionController(ac);
+        NmarPipeline.Config cfg = new NmarPipeline.Config();
+        cfg.queueCapacity = 1;
+        cfg.admission = admission;
+        List<CompletableFuture<PipelineTask>> futures = new ArrayList<>();
+        try (NmarPipeline p = new NmarPipeline(mesh, new ModalityFusion(64), new MemoryAnchors(2000, 0.01),
+                new MetaReasoner(), new AdaptiveLearner(mesh, 100), null, cfg)) {
+            PipelineTask refused = null, queued = null;
+            synchronized (mesh) {
+                for (int i=0;refused == null;i++) {
+                    PipelineTask t = climate(i);
+                    CompletableFuture<PipelineTask> f = p.trySubmit(t, 50, TimeUnit.MILLISECONDS);
+                    if (f == null) refused = t;
+                    else { futures.add(f); queued = t; }
+                }
+                // the refused attempt handed its permit back
+                assertEquals(futures.size(), admission.limiter().inFlight());
+                PipelineTask inFlight = queued;
+                assertThrows(IllegalStateException.class, () -> p.submit(inFlight));
+            }
+            PipelineTask retried = p.submit(refused).get(30, TimeUnit.SECONDS);
+            assertNotNull(retried.feedback());
+            for (CompletableFuture<PipelineTask> f : futures) assertNotNull(f.get(30, TimeUnit.SECONDS).feedback());
+            PipelineTask finished = refused;
+            assertThrows(IllegalStateException.class, () -> p.trySubmit(finished, 1, TimeUnit.SECONDS));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (admission.limiter().inFlight() > 0 && System.nanoTime() < deadline) Thread.sleep(5);
+            assertEquals(0, admission.limiter().inFlight());
+        }
+    }
+
+    static PipelineTask task(int i, Deadline deadline) {
+        return new PipelineTask("request " + i + " about drought", null, null, new double[]{0.1, 0.4}, "drought:" + i,
+                "Fund irrigation upgrades.", 0.7, deadline);
+    }
+
+    @Test
+    public void admissionRejectsFailsLateWorkAndShedsOptionalStages() throws Exception {
+        NeuroMesh mesh = new NeuroMesh(0.01, 1024);
+        AdmissionController.Config ac = new AdmissionController.Config();
+        ac.limiter.initialLimit = 2;
+        ac.limiter.minLimit = 2;
+        ac.limiter.maxLimit = 2;
+        AdmissionController admission = new AdmissionController(ac);
+        NmarPipeline.Config cfg = new NmarPipeline.Config();
+        cfg.admission = admission;
+        Metrics.Counter shedLearn = Metrics.counter("nmar_admission_shed_learn", "");
+        long shedBefore = shedLearn.get();
+        try (NmarPipeline p = new NmarPipeline(mesh, new ModalityFusion(64), new MemoryAnchors(2000, 0.01),
+                new MetaReasoner(), new AdaptiveLearner(mesh, 100), null, cfg)) {
+            // an already expired deadline is refused at the door
+            ExecutionException late = assertThrows(ExecutionException.class,
+                    () -> p.submit(task(0, Deadline.after(0, TimeUnit.MILLISECONDS))).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, late.getCause());
+
+            // with one slot held elsewhere the task runs at full load: mandatory stages complete, learning is shed
+            AdaptiveLimiter.Permit held = admission.admit(Deadline.none());
+            PipelineTask t = p.submit(task(1, Deadline.after(30, TimeUnit.SECONDS))).get(30, TimeUnit.SECONDS);
+            assertNotNull(t.chunk());
+            assertNotNull(t.feedback());
+            assertEquals(shedBefore + 1, shedLearn.get());
+            // and nothing beyond the limit is queued
+            ExecutionException full = assertThrows(ExecutionException.class, () -> {
+                AdaptiveLimiter.Permit other = admission.admit(Deadline.none());
+                try {
+                    p.submit(task(2, Deadline.none())).get(5, TimeUnit.SECONDS);
+                } finally {
+                    other.ignore();
+                }
+            });
+            assertInstanceOf(RejectedExecutionException.class, full.getCause());
+            held.ignore();
+            assertNotNull(p.submit(task(3, Deadline.none())).get(30, TimeUnit.SECONDS).feedback());
+        }
+    }
+
+    @Test
+    public void expiredTasksFailInRequiredStages() throws Exception {
+        NeuroMesh mesh = new NeuroMesh(0.01, 1024);
+        try (NmarPipeline p = new NmarPipeline(mesh, new ModalityFusion(64), new MemoryAnchors(2000, 0.01),
+                new MetaReasoner(), new AdaptiveLearner(mesh, 100))) {
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> p.submit(task(0, Deadline.after(0, TimeUnit.MILLISECONDS))).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(DeadlineExceededException.class, e.getCause());
+            assertEquals(1L, ((Map<?,?>) p.stats().get("encode")).get("expired"));
+        }
+    }
+
+    @Test
+    public void submitAfterCloseIsRejected() throws Exception {
+        NeuroMesh mesh = new NeuroMesh(0.01, 1024);
+        NmarPipeline p = new NmarPipeline(mesh, new ModalityFusion(64), new MemoryAnchors(2000, 0.01),
+                new MetaReasoner(), new AdaptiveLearner(mesh, 100));
+        assertNotNull(p.submit(task(0, Deadline.none())).get(30, TimeUnit.SECONDS).feedback());
+        p.close();
+        ExecutionException viaSubmit = assertThrows(ExecutionException.class,
+                () -> p.submit(task(1, Deadline.none())).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, viaSubmit.getCause());
+        CompletableFuture<PipelineTask> viaTry = p.trySubmit(task(2, Deadline.none()), 1, TimeUnit.SECONDS);
+        assertNotNull(viaTry);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> viaTry.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        p.close();
+    }
+
+    @Test
+    public void perTaskHandlerFailsOnlyTheTaskThatThrows() throws Exception {
+        Stage stage = new Stage("isolation", 16, 1, 8, Stage.perTask(t -> {
+            if (t.memoryKey.equals("drought:3")) throw new IllegalStateException("bad task");
+        }));
+        List<PipelineTask> tasks = new ArrayList<>();
+        // queued before the worker starts, so all eight land in one batch
+        for (int i=0;i<8;i++) {
+            PipelineTask t = task(i, Deadline.none());
+            tasks.add(t);
+            stage.put(t);
+        }
+        stage.start(null);
+        for (PipelineTask t : tasks) {
+            if (t.memoryKey.equals("drought:3")) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> t.future().get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            } else {
+                assertSame(t, t.future().get(5, TimeUnit.SECONDS));
+            }
+        }
+        stage.shutdown();
+        assertEquals(7L, stage.stats().get("processed"));
+        assertEquals(1L, stage.stats().get("failed"));
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,101 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.quant;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuantizedVectorStoreTest {
+    private static final int DIM = 64, N = 2000, QUERIES = 50, K = 10;
+
+    @TempDir
+    Path dir;
+
+    // 16 tight clusters of unit vectors in 64 dims: small enough for exact truth in-test,
+    // clustered enough that quantization error matters the way it does for text embeddings
+    private static float[][] clustered(int n, long seed) {
+        return VectorFixtures.clustered(n, DIM, 16, seed);
+    }
+
+    private static double recall(QuantizedVectorStore store, float[][] queries, int rerank) {
+        int found = 0;
+        for (float[] q : queries) {
+            Set<Long> truth = new HashSet<>();
+            for (QuantizedVectorStore.Hit h : store.searchExact(q, K)) truth.add(h.id);
+            for (QuantizedVectorStore.Hit h : store.search(q, K, rerank)) if (truth.contains(h.id)) found++;
+        }
+        return found / (double) (queries.length * K);
+    }
+
+    // originals go to an mmap file keyed by ordinal; the store itself keeps codes and ids only
+    private QuantizedVectorStore fill(VectorQuantizer q, float[][] data, String name) {
+        MappedVectorFile originals = new MappedVectorFile(dir.resolve(name), DIM);
+        QuantizedVectorStore store = new QuantizedVectorStore(q, originals::get);
+        for (float[] v : data) store.add(originals.append(v), v);
+        return store;
+    }
+
+    @Test
+    public void int8KeepsRecallAtQuarterSize() {
+        float[][] data = clustered(N, 1);
+        QuantizedVectorStore store = fill(ScalarQuantizer.train(data, 0.0), data, "int8.f32");
+        assertEquals(4.0, (Double) store.stats().get("compressionVsFloat32"), 1e-9);
+        assertEquals(DIM + 8, store.stats().get("heapBytesPerVector"));
+        assertTrue(recall(store, clustered(QUERIES, 2), 1) >= 0.9);
+    }
+
+    @Test
+    public void productQuantizationRecoversRecallWithRerank() {
+        float[][] data = clustered(N, 1);
+        ProductQuantizer pq = ProductQuantizer.train(data, 16, 256, 8, 7);
+        QuantizedVectorStore store = fill(pq, data, "pq.f32");
+        assertEquals(16.0, (Double) store.stats().get("compressionVsFloat32"), 1e-9);
+        assertEquals(16 + 8, store.stats().get("heapBytesPerVector"));
+        float[][] queries = clustered(QUERIES, 2);
+        double plain = recall(store, queries, 1);
+        double reranked = recall(store, queries, 10);
+        assertTrue(reranked >= 0.95, "reranked recall " + reranked);
+        assertTrue(reranked >= plain);
+        assertThrows(IllegalStateException.class, () -> new QuantizedVectorStore(pq).search(queries[0], K, 4));
+    }
+
+    @Test
+    public void mappedOriginalsSurviveReopen() {
+        float[][] data = clustered(300, 5);
+        Path file = dir.resolve("reopen.f32");
+        try (MappedVectorFile f = new MappedVectorFile(file, DIM)) {
+            for (float[] v : data) f.append(v);
+        }
+        try (MappedVectorFile f = new MappedVectorFile(file, DIM)) {
+            assertEquals(300, f.size());
+            assertArrayEquals(data[299], f.get(299));
+            assertEquals(300, f.append(data[0]));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new MappedVectorFile(file, DIM * 2));
+        assertThrows(IllegalArgumentException.class, () -> new MappedVectorFile(dir.resolve("zero.f32"), 0));
+    }
+
+    @Test
+    public void asymmetricScoreMatchesDecodedDot() {
+        float[][] data = clustered(200, 3);
+        float[] q = clustered(1, 4)[0];
+        for (VectorQuantizer vq : List.of(ScalarQuantizer.train(data, 0.0), ProductQuantizer.train(data, 8, 32, 5, 1))) {
+            byte[] codes = new byte[vq.codeBytes()];
+            vq.encode(data[0], codes, 0);
+            float[] back = vq.decode(codes, 0);
+            float dot = 0f;
+            for (int d=0; d<DIM; d++) dot += q[d] * back[d];
+            assertEquals(dot, vq.scorer(q).score(codes, 0), 1e-4);
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,41 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.quant;
+
+import java.util.Random;
+
+/**
+ * VectorFixtures - synthetic embedding sets shared by the quantization tests and
+ * benchmarks (java_nmar_bench depends on this module's test-jar for it). Vectors are
+ * unit-normalised points scattered (sigma 0.6 per dimension) around fixed Gaussian
+ * centres, the same centres for every seed, so data and query sets drawn with different
+ * seeds come from one distribution. The unit tests use 16 centres, small enough for exact
+ * truth in-test; the benchmarks use 64, which at tens of thousands of vectors keeps
+ * neighbourhoods crowded enough that quantization error changes the top-10.
+ */
+public final class VectorFixtures {
+    private VectorFixtures() {}
+
+    public static float[][] clustered(int n, int dim, int centres, long seed) {
+        Random r = new Random(seed);
+        Random centreGen = new Random(42);
+        float[][] c = new float[centres][dim];
+        for (float[] v : c) for (int d=0; d<dim; d++) v[d] = (float) centreGen.nextGaussian();
+        float[][] out = new float[n][dim];
+        for (int i=0;i<n;i++) {
+            float[] base = c[r.nextInt(c.length)];
+            double norm = 0.0;
+            for (int d=0; d<dim; d++) {
+                out[i][d] = base[d] + (float) (r.nextGaussian() * 0.6);
+                norm += out[i][d] * out[i][d];
+            }
+            for (int d=0; d<dim; d++) out[i][d] /= (float) Math.sqrt(norm);
+        }
+        return out;
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,114 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.server;
+
+import com.devin.nmar.fusion.ModalityFusion;
+import com.devin.nmar.memory.MemoryAnchors;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InferenceServerTest {
+    private final ObjectMapper json = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private InferenceServer server;
+
+    @BeforeEach
+    public void start() throws Exception {
+        InferenceServer.Config cfg = new InferenceServer.Config();
+        cfg.port = 0;
+        server = new InferenceServer(new ModalityFusion(64), new MemoryAnchors(2000, 0.01), cfg);
+        server.start();
+    }
+
+    @AfterEach
+    public void stop() {
+        server.stop();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.port() + path);
+    }
+
+    @Test
+    public void jsonAndBinaryInferAgree() throws Exception {
+        HttpResponse<String> js = client.send(HttpRequest.newBuilder(uri("/infer"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"modality\":\"sensor\",\"payload\":{\"input\":[0.1,0.2,0.3]}}")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, js.statusCode());
+        JsonNode emb = json.readTree(js.body()).get("embedding");
+        assertEquals(64, emb.size());
+
+        ByteBuffer in = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN).putFloat(0.1f).putFloat(0.2f).putFloat(0.3f);
+        HttpResponse<byte[]> bin = client.send(HttpRequest.newBuilder(uri("/infer?modality=sensor"))
+                .header("Content-Type", InferenceServer.F32_CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(in.array())).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, bin.statusCode());
+        ByteBuffer out = ByteBuffer.wrap(bin.body()).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(64 * Float.BYTES, out.remaining());
+        for (int i=0;i<64;i++) assertEquals(emb.get(i).floatValue(), out.getFloat(), 1e-6);
+
+        HttpResponse<String> torn = client.send(HttpRequest.newBuilder(uri("/infer?modality=sensor"))
+                .header("Content-Type", InferenceServer.F32_CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(new byte[10])).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, torn.statusCode());
+    }
+
+    @Test
+    public void rememberThenRetrieve() throws Exception {
+        HttpResponse<String> r = client.send(HttpRequest.newBuilder(uri("/remember"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"key\":\"climate:policy\",\"payload\":\"sea-level rise\",\"relevance\":0.9}")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, r.statusCode());
+        String id = json.readTree(r.body()).get("id").asText();
+
+        HttpResponse<String> q = client.send(HttpRequest.newBuilder(uri("/retrieve?q=climate&limit=5")).GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, q.statusCode());
+        JsonNode chunks = json.readTree(q.body()).get("chunks");
+        assertEquals(1, chunks.size());
+        assertEquals(id, chunks.get(0).get("id").asText());
+
+        HttpResponse<String> bad = client.send(HttpRequest.newBuilder(uri("/retrieve")).GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, bad.statusCode());
+    }
+
+    @Test
+    public void malformedJsonIsBadRequest() throws Exception {
+        for (String path : new String[]{"/infer", "/remember"}) {
+            HttpResponse<String> r = client.send(HttpRequest.newBuilder(uri(path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"key\":\"k\",\"payload\":")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, r.statusCode(), path);
+            assertFalse(json.readTree(r.body()).get("success").asBoolean());
+        }
+    }
+
+    @Test
+    public void metricsExportIncludesRequestLatency() throws Exception {
+        client.send(HttpRequest.newBuilder(uri("/retrieve?q=x")).GET().build(), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> m = client.send(HttpRequest.newBuilder(uri("/metrics")).GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, m.statusCode());
+        assertTrue(m.body().contains("# TYPE nmar_http_request_seconds summary"));
+        assertTrue(m.body().contains("nmar_memory_retrieve_seconds_count"));
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,85 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.bench;
+
+import com.devin.nmar.core.NeuroMesh;
+import com.devin.nmar.learning.AdaptiveLearner;
+import com.devin.nmar.fusion.ModalityFusion;
+import com.devin.nmar.metrics.LatencyHistogram;
+import com.devin.nmar.metrics.Metrics;
+import com.devin.nmar.metrics.NmarEvents;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * InstrumentationBenchmark - what one instrumented call adds: a timer record (two
+ * nanoTime reads plus the histogram update) and the guarded JFR event with no recording
+ * running. Run with -jvmArgsAppend -XX:StartFlightRecording to see the cost with events
+ * enabled. The yardsticks bound the overhead: learnerApply (8 keys, 256-node mesh) is the
+ * cheapest call that still carries a per-call timer, so timerRecord / learnerApply is the
+ * worst timer overhead; encodeSensor (dim 128) is the cheapest call with a guarded event,
+ * so guardedEvent / encodeSensor is the worst event overhead. Both must stay under 1%.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentationBenchmark {
+    private static final LatencyHistogram TIMER = Metrics.timer("nmar_bench_instrumentation_seconds", "InstrumentationBenchmark timer");
+
+    private final ModalityFusion fusion = new ModalityFusion(128);
+    private final double[] sensor = {0.3, 0.2, 0.7};
+    private AdaptiveLearner learner;
+    private List<List<String>> keySets;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        Logger.getLogger(NeuroMesh.class.getName()).setLevel(java.util.logging.Level.WARNING);
+        NeuroMesh mesh = new NeuroMesh(0.001, 256);
+        for (int i=0;i<256;i++) mesh.createNode("sem:" + i, 0.5);
+        learner = new AdaptiveLearner(mesh, 100);
+        keySets = new ArrayList<>();
+        Random r = new Random(42);
+        for (int s=0;s<64;s++) {
+            List<String> ks = new ArrayList<>();
+            for (int k=0;k<8;k++) ks.add("sem:" + r.nextInt(256));
+            keySets.add(ks);
+        }
+    }
+
+    @Benchmark
+    public long timerRecord() {
+        long t0 = System.nanoTime();
+        long dt = System.nanoTime() - t0;
+        TIMER.record(dt);
+        return dt;
+    }
+
+    @Benchmark
+    public Object guardedEvent() {
+        NmarEvents.Encode ev = NmarEvents.encode();
+        if (ev != null) ev.finish("sensor", 128);
+        return ev;
+    }
+
+    @Benchmark
+    public ModalityFusion.Embedding encodeSensor() {
+        return fusion.encodeSensor(sensor);
+    }
+
+    @Benchmark
+    public void learnerApply() {
+        learner.apply(keySets.get(ThreadLocalRandom.current().nextInt(keySets.size())), 0.55);
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,49 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.bench;
+
+import com.devin.nmar.memory.MemoryAnchors;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemoryAnchorsBenchmark - remember/retrieve on a store filled to capacity.
+ * At capacity every remember triggers consolidate, so {@code rememberAndConsolidate}
+ * measures the insert plus the consolidation it forces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryAnchorsBenchmark {
+    @Param({"1000", "10000"})
+    public int chunks;
+
+    private MemoryAnchors full;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        full = new MemoryAnchors(chunks, 0.01);
+        for (int i=0;i<chunks;i++) full.remember("topic:" + (i % 64), "payload " + i + " about coastal infrastructure", (i % 100) / 100.0);
+    }
+
+    @Benchmark
+    public MemoryAnchors.Chunk rememberAndConsolidate() {
+        return full.remember("topic:new", "fresh payload", ThreadLocalRandom.current().nextDouble());
+    }
+
+    @Benchmark
+    public List<MemoryAnchors.Chunk> retrieve() {
+        return full.retrieve("topic:" + ThreadLocalRandom.current().nextInt(64), 10);
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
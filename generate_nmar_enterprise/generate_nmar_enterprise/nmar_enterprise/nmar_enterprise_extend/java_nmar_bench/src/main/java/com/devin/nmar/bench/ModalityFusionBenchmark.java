@@ -0,0 +1,65 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.bench;
+
+import com.devin.nmar.fusion.ModalityFusion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ModalityFusionBenchmark - each placeholder encoder and three-way fusion per embedding dim.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModalityFusionBenchmark {
+    @Param({"128", "512", "1536"})
+    public int dim;
+
+    private ModalityFusion fusion;
+    private Map<String,ModalityFusion.Embedding> modalities;
+    private final byte[] image = new byte[4096];
+    private final double[] sensor = new double[64];
+
+    @Setup
+    public void setup() {
+        fusion = new ModalityFusion(dim);
+        for (int i=0;i<image.length;i++) image[i] = (byte) i;
+        for (int i=0;i<sensor.length;i++) sensor[i] = i * 0.01;
+        modalities = new HashMap<>();
+        modalities.put("text", fusion.encodeText("Projected sea-level rise near urban coasts."));
+        modalities.put("image", fusion.encodeImage(image, "sat"));
+        modalities.put("sensor", fusion.encodeSensor(sensor));
+    }
+
+    @Benchmark
+    public ModalityFusion.Embedding encodeText() {
+        return fusion.encodeText("Projected sea-level rise near urban coasts will accelerate infrastructure risks.");
+    }
+
+    @Benchmark
+    public ModalityFusion.Embedding encodeImage() {
+        return fusion.encodeImage(image, "sat");
+    }
+
+    @Benchmark
+    public ModalityFusion.Embedding encodeSensor() {
+        return fusion.encodeSensor(sensor);
+    }
+
+    @Benchmark
+    public ModalityFusion.Embedding fuse() {
+        return fusion.fuse(modalities);
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
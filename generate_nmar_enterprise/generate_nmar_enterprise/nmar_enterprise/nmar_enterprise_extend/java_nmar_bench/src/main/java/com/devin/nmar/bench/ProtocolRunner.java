@@ -0,0 +1,329 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.bench;
+
+import com.devin.nmar.core.NeuroMesh;
+import com.devin.nmar.fusion.ModalityFusion;
+import com.devin.nmar.learning.AdaptiveLearner;
+import com.devin.nmar.memory.MemoryAnchors;
+import com.devin.nmar.meta.MetaReasoner;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ProtocolRunner - drives the com.devin.nmar request path (encode, fuse, mesh, memory,
+ * meta, learner) under a synthetic workload and writes a report conforming to
+ * benchmark/NMARBenchmarkingProtocol.json, with measured latency percentiles, throughput,
+ * allocation and retained heap per module instead of hand-entered scores.
+ *
+ * Usage: ProtocolRunner [--ops=N] [--warmup=N] [--rate=R] [--mix=text:0.6,image:0.2,sensor:0.2]
+ *                       [--mesh-size=N] [--dim=N] [--model-id=ID] [--out=FILE]
+ * With --rate the driver is open loop and summary latency counts from each request's
+ * scheduled start, so queueing delay is not hidden when the pipeline falls behind.
+ */
+public class ProtocolRunner {
+    // held strongly so the level survives; eviction warnings from a full mesh would dominate the timings
+    private static final Logger NMAR_LOG = Logger.getLogger("com.devin.nmar");
+    private static final String[] MODULES = {"ModalityFusion", "TopologyMesh", "MemoryAnchor", "MetaReasoning", "AdaptiveEngine"};
+    private static final int FUSION = 0, MESH = 1, MEMORY = 2, META = 3, LEARNER = 4;
+
+    private final Map<String,String> opts;
+    private final int ops;
+    private final int warmup;
+    private final double rate;
+    private final Map<String,Double> mix;
+    private final int meshSize;
+    private final int dim;
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final long[][] latencyNanos;
+    private final long[] allocBytes = new long[MODULES.length];
+    private final long[] serviceNanos = new long[MODULES.length];
+    private final long[] endToEndNanos;
+
+    ProtocolRunner(Map<String,String> opts) {
+        this.opts = opts;
+        this.ops = Integer.parseInt(opts.getOrDefault("ops", "20000"));
+        this.warmup = Integer.parseInt(opts.getOrDefault("warmup", "5000"));
+        this.rate = Double.parseDouble(opts.getOrDefault("rate", "0"));
+        this.mix = parseMix(opts.getOrDefault("mix", "text:0.6,image:0.2,sensor:0.2"));
+        this.meshSize = Integer.parseInt(opts.getOrDefault("mesh-size", "1024"));
+        this.dim = Integer.parseInt(opts.getOrDefault("dim", "128"));
+        if (ops < 1) throw new IllegalArgumentException("--ops must be at least 1, got " + ops);
+        if (warmup < 0) throw new IllegalArgumentException("--warmup must not be negative, got " + warmup);
+        this.latencyNanos = new long[MODULES.length][ops];
+        this.endToEndNanos = new long[ops];
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String,String> opts = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) throw new IllegalArgumentException("unexpected argument " + a);
+            int eq = a.indexOf('=');
+            if (eq < 0) opts.put(a.substring(2), "true");
+            else opts.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+        NMAR_LOG.setLevel(Level.SEVERE);
+        Map<String,Object> report = new ProtocolRunner(opts).run();
+        ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        String out = opts.get("out");
+        if (out == null) {
+            System.out.println(json.writeValueAsString(report));
+        } else {
+            File f = new File(out);
+            if (f.getParentFile() != null) Files.createDirectories(f.getParentFile().toPath());
+            json.writeValue(f, report);
+            System.out.println("NMAR protocol report written to " + f.getAbsolutePath());
+        }
+    }
+
+    Map<String,Object> run() {
+        MemoryMXBean heap = ManagementFactory.getMemoryMXBean();
+        long baseline = usedAfterGc(heap);
+
+        NeuroMesh mesh = new NeuroMesh(0.01, meshSize);
+        for (int i=0;i<meshSize;i++) mesh.createNode("seed:" + i, 0.5);
+        ModalityFusion fusion = new ModalityFusion(dim);
+        MemoryAnchors memory = new MemoryAnchors(Math.max(100, meshSize * 2), 0.01);
+        MetaReasoner meta = new MetaReasoner();
+        AdaptiveLearner learner = new AdaptiveLearner(mesh, 100);
+
+        Random r = new Random(42);
+        for (int i=0;i<warmup;i++) request(i, r, fusion, mesh, memory, meta, learner, false);
+        Arrays.fill(allocBytes, 0);
+        Arrays.fill(serviceNanos, 0);
+
+        long start = System.nanoTime();
+        long intervalNanos = rate > 0 ? (long) (1e9 / rate) : 0;
+        for (int i=0;i<ops;i++) {
+            long scheduled = intervalNanos > 0 ? start + i * intervalNanos : System.nanoTime();
+            if (intervalNanos > 0) {
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+            }
+            request(i, r, fusion, mesh, memory, meta, learner, true);
+            endToEndNanos[i] = System.nanoTime() - scheduled;
+        }
+        double elapsedSec = (System.nanoTime() - start) / 1e9;
+
+        // retained heap per module: release each component in turn and measure what the GC gets back.
+        // The learner goes before the mesh it points to, so each figure is that module's own state.
+        Object[] live = new Object[MODULES.length];
+        live[FUSION] = fusion;
+        live[MESH] = mesh;
+        live[MEMORY] = memory;
+        live[META] = meta;
+        live[LEARNER] = learner;
+        fusion = null;
+        mesh = null;
+        memory = null;
+        meta = null;
+        learner = null;
+        long[] heapBytes = new long[MODULES.length];
+        long before = usedAfterGc(heap);
+        long last = before;
+        for (int m : new int[]{MEMORY, LEARNER, MESH, META, FUSION}) {
+            live[m] = null;
+            long after = usedAfterGc(heap);
+            heapBytes[m] = Math.max(0, last - after);
+            last = after;
+        }
+        long total = Math.max(0, before - baseline);
+
+        Map<String,Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().truncatedTo(ChronoUnit.SECONDS).toString());
+        report.put("model_id", opts.getOrDefault("model-id", "NMAR-core-0.2.0"));
+        report.put("hardware_profile", hardwareProfile());
+        Map<String,Object> workload = new LinkedHashMap<>();
+        workload.put("ops", ops);
+        workload.put("warmup_ops", warmup);
+        workload.put("target_rate_per_sec", rate);
+        workload.put("modality_mix", mix);
+        workload.put("mesh_size", meshSize);
+        workload.put("embedding_dim", dim);
+        workload.put("duration_sec", round(elapsedSec));
+        report.put("workload", workload);
+
+        long allocTotal = 0;
+        for (long a : allocBytes) allocTotal += a;
+        Map<String,Object> summary = performance(endToEndNanos, ops / elapsedSec, allocTotal, elapsedSec);
+        summary.put("heap_bytes", total);
+        report.put("summary", summary);
+
+        List<Object> modules = new ArrayList<>();
+        for (int m=0;m<MODULES.length;m++) {
+            Map<String,Object> mod = new LinkedHashMap<>();
+            mod.put("name", MODULES[m]);
+            double serviceSec = serviceNanos[m] / 1e9;
+            Map<String,Object> perf = performance(latencyNanos[m], serviceSec == 0 ? 0 : ops / serviceSec, allocBytes[m], serviceSec);
+            perf.put("heap_bytes", heapBytes[m]);
+            mod.put("performance", perf);
+            mod.put("notes", "measured by ProtocolRunner; ops_per_sec is single-thread service throughput; "
+                + "heap_bytes is what a full GC reclaims once the module is released, so values of a few KB are noise");
+            modules.add(mod);
+        }
+        report.put("modules", modules);
+        return report;
+    }
+
+    private void request(int i, Random r, ModalityFusion fusion, NeuroMesh mesh, MemoryAnchors memory,
+                         MetaReasoner meta, AdaptiveLearner learner, boolean record) {
+        String modality = pickModality(r);
+        String text = "request " + i + " on coastal flooding and infrastructure risk " + r.nextInt(1000);
+
+        long t = mark(FUSION, -1, i, record);
+        Map<String,ModalityFusion.Embedding> mods = new HashMap<>();
+        mods.put("text", fusion.encodeText(text));
+        if ("image".equals(modality)) mods.put("image", fusion.encodeImage(new byte[]{(byte) i, (byte) (i >> 8), 3, 4, 5}, "sat"));
+        if ("sensor".equals(modality)) mods.put("sensor", fusion.encodeSensor(new double[]{r.nextDouble(), r.nextDouble()}));
+        ModalityFusion.Embedding fused = fusion.fuse(mods);
+
+        t = mark(MESH, t, i, record);
+        List<String> keys = new ArrayList<>();
+        for (int k=0;k<8;k++) keys.add("sem:" + k + ":" + (int) (fused.v[k] * 1000));
+        for (String k : keys) mesh.getOrCreate(k, 0.5);
+        mesh.propagate(0.04, 1);
+
+        t = mark(MEMORY, t, i, record);
+        memory.remember("topic:" + (i % 64), text, 0.9);
+        memory.retrieve("topic:" + r.nextInt(64), 5);
+
+        t = mark(META, t, i, record);
+        MetaReasoner.Feedback f = meta.evaluate(text, "Recommend adaptation funding and coastal managed retreat studies.", 0.8, Collections.emptyMap());
+
+        t = mark(LEARNER, t, i, record);
+        learner.apply(keys, f.reward);
+        mark(-1, t, i, record);
+    }
+
+    // per-module bookkeeping: closes the running module (if any) and opens the next one
+    private int open = -1;
+    private long openAlloc;
+
+    private long mark(int next, long startNanos, int i, boolean record) {
+        long now = System.nanoTime();
+        long alloc = threads.getCurrentThreadAllocatedBytes();
+        if (open >= 0) {
+            long dt = now - startNanos;
+            if (record) latencyNanos[open][i] = dt;
+            serviceNanos[open] += dt;
+            allocBytes[open] += alloc - openAlloc;
+        }
+        open = next;
+        openAlloc = alloc;
+        return System.nanoTime();
+    }
+
+    private String pickModality(Random r) {
+        double total = 0;
+        for (double w : mix.values()) total += w;
+        double x = r.nextDouble() * total;
+        for (Map.Entry<String,Double> e : mix.entrySet()) {
+            x -= e.getValue();
+            if (x <= 0) return e.getKey();
+        }
+        return "text";
+    }
+
+    private Map<String,Object> performance(long[] nanos, double opsPerSec, long alloc, double seconds) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (long n : sorted) sum += n;
+        Map<String,Object> latency = new LinkedHashMap<>();
+        latency.put("mean", round(sum / sorted.length / 1e6));
+        latency.put("p50", round(percentile(sorted, 0.50) / 1e6));
+        latency.put("p99", round(percentile(sorted, 0.99) / 1e6));
+        latency.put("p999", round(percentile(sorted, 0.999) / 1e6));
+        latency.put("max", round(sorted[sorted.length - 1] / 1e6));
+        Map<String,Object> perf = new LinkedHashMap<>();
+        perf.put("ops", sorted.length);
+        perf.put("ops_per_sec", round(opsPerSec));
+        perf.put("latency_ms", latency);
+        perf.put("alloc_bytes_per_op", round((double) alloc / sorted.length));
+        perf.put("alloc_mb_per_sec", round(seconds == 0 ? 0 : alloc / seconds / (1024.0 * 1024.0)));
+        return perf;
+    }
+
+    private static long percentile(long[] sorted, double q) {
+        int idx = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 1000.0) / 1000.0;
+    }
+
+    /**
+     * Least heap in use across four full collections. Serial and Parallel mark-compact may
+     * leave dead objects in place (MarkSweepDeadRatio) except on every fourth full GC, so a
+     * single reading can miss what a released module freed.
+     */
+    private static long usedAfterGc(MemoryMXBean heap) {
+        long used = Long.MAX_VALUE;
+        for (int i=0;i<4;i++) {
+            System.gc();
+            used = Math.min(used, heap.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private static Map<String,Double> parseMix(String spec) {
+        Map<String,Double> out = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.split(":");
+            if (kv.length != 2) throw new IllegalArgumentException("bad --mix entry " + part);
+            out.put(kv[0].trim(), Double.parseDouble(kv[1]));
+        }
+        return out;
+    }
+
+    private static Map<String,Object> hardwareProfile() {
+        Map<String,Object> hw = new LinkedHashMap<>();
+        hw.put("cpu", cpuModel());
+        long ram = 0;
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean) {
+            ram = ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getTotalMemorySize();
+        }
+        hw.put("ram_gb", round(ram / (1024.0 * 1024.0 * 1024.0)));
+        hw.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        hw.put("arch", System.getProperty("os.arch"));
+        hw.put("cores", Runtime.getRuntime().availableProcessors());
+        hw.put("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.runtime.version"));
+        return hw;
+    }
+
+    private static String cpuModel() {
+        try {
+            Path cpuinfo = Path.of("/proc/cpuinfo");
+            if (Files.isReadable(cpuinfo)) {
+                for (String line : Files.readAllLines(cpuinfo)) {
+                    if (line.startsWith("model name")) return line.substring(line.indexOf(':') + 1).trim();
+                }
+            }
+            Process p = new ProcessBuilder("sysctl", "-n", "machdep.cpu.brand_string").redirectErrorStream(true).start();
+            String brand = new String(p.getInputStream().readAllBytes()).trim();
+            if (p.waitFor() == 0 && !brand.isEmpty()) return brand;
+        } catch (Exception e) {
+            // fall through to the generic description
+        }
+        return System.getProperty("os.arch") + " (" + Runtime.getRuntime().availableProcessors() + " cores)";
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,104 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.bench;
+
+import com.devin.nmar.quant.MappedVectorFile;
+import com.devin.nmar.quant.ProductQuantizer;
+import com.devin.nmar.quant.QuantizedVectorStore;
+import com.devin.nmar.quant.ScalarQuantizer;
+import com.devin.nmar.quant.VectorFixtures;
+import com.devin.nmar.quant.VectorQuantizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QuantizationBenchmark - top-10 search latency for exact float32, int8, PQ and PQ with
+ * full-precision rerank over VectorFixtures data. The store keeps codes and ids on the
+ * heap; full-precision vectors (for rerank and the exact baseline) are read from a
+ * MappedVectorFile, as in production. Recall@10 and heap bytes per vector for the same
+ * configurations are printed by QuantizationReport, so the latency numbers can be read
+ * next to the recall they buy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuantizationBenchmark {
+    static final int K = 10;
+    // more centres than the unit tests use: crowded neighbourhoods at benchmark sizes
+    static final int CENTRES = 64;
+    static final String[] MODES = {"exact", "int8", "pq", "pq-rerank"};
+
+    @Param({"exact", "int8", "pq", "pq-rerank"})
+    public String mode;
+
+    @Param({"20000"})
+    public int vectors;
+
+    @Param({"256"})
+    public int dim;
+
+    private QuantizedVectorStore store;
+    private MappedVectorFile originals;
+    private Path originalsFile;
+    private float[][] queries;
+
+    /** Per-thread position in the query set, so threads never share a counter. */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        float[][] data = VectorFixtures.clustered(vectors, dim, CENTRES, 1);
+        queries = VectorFixtures.clustered(64, dim, CENTRES, 2);
+        originalsFile = Files.createTempFile("nmar-quant", ".f32");
+        originals = new MappedVectorFile(originalsFile, dim);
+        store = build(mode, data, originals);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        originals.close();
+        Files.deleteIfExists(originalsFile);
+    }
+
+    /** Trains the quantizer for {@code mode} and loads {@code data}, originals going to {@code originals}. */
+    static QuantizedVectorStore build(String mode, float[][] data, MappedVectorFile originals) {
+        float[][] sample = Arrays.copyOf(data, Math.min(data.length, 4096));
+        int dim = data[0].length;
+        VectorQuantizer q = mode.equals("int8") || mode.equals("exact")
+            ? ScalarQuantizer.train(sample, 0.0)
+            : ProductQuantizer.train(sample, dim / 4, 256, 6, 7);
+        QuantizedVectorStore store = new QuantizedVectorStore(q, originals::get);
+        for (float[] v : data) store.add(originals.append(v), v);
+        return store;
+    }
+
+    static List<QuantizedVectorStore.Hit> search(QuantizedVectorStore store, String mode, float[] query) {
+        switch (mode) {
+            case "exact": return store.searchExact(query, K);
+            case "pq-rerank": return store.search(query, K, 10);
+            default: return store.search(query, K, 1);
+        }
+    }
+
+    @Benchmark
+    public List<QuantizedVectorStore.Hit> searchTop10(Cursor cursor) {
+        float[] q = queries[cursor.next++ & (queries.length - 1)];
+        return search(store, mode, q);
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,62 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.bench;
+
+import com.devin.nmar.quant.MappedVectorFile;
+import com.devin.nmar.quant.QuantizedVectorStore;
+import com.devin.nmar.quant.VectorFixtures;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * QuantizationReport - prints recall@10 against exact search and heap bytes per vector
+ * for each QuantizationBenchmark mode, built exactly as the benchmark builds them
+ * (mmap-backed originals). Kept out of the benchmark so its setup stays silent.
+ * Usage: java -cp java_nmar_bench/target/benchmarks.jar com.devin.nmar.bench.QuantizationReport
+ *   [--vectors=20000] [--dim=256] [--queries=64]
+ */
+public final class QuantizationReport {
+    private QuantizationReport() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String,String> opts = new HashMap<>();
+        for (String a : args) {
+            int eq = a.indexOf('=');
+            if (!a.startsWith("--") || eq < 0) throw new IllegalArgumentException("unexpected argument " + a);
+            opts.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+        int vectors = Integer.parseInt(opts.getOrDefault("vectors", "20000"));
+        int dim = Integer.parseInt(opts.getOrDefault("dim", "256"));
+        int nq = Integer.parseInt(opts.getOrDefault("queries", "64"));
+        if (vectors < QuantizationBenchmark.K || dim < 4 || nq < 1) throw new IllegalArgumentException("need vectors >= 10, dim >= 4, queries >= 1");
+        float[][] data = VectorFixtures.clustered(vectors, dim, QuantizationBenchmark.CENTRES, 1);
+        float[][] queries = VectorFixtures.clustered(nq, dim, QuantizationBenchmark.CENTRES, 2);
+        System.out.printf("%-10s %10s %20s%n", "mode", "recall@" + QuantizationBenchmark.K, "heapBytesPerVector");
+        for (String mode : QuantizationBenchmark.MODES) {
+            Path file = Files.createTempFile("nmar-quant", ".f32");
+            try (MappedVectorFile originals = new MappedVectorFile(file, dim)) {
+                QuantizedVectorStore store = QuantizationBenchmark.build(mode, data, originals);
+                int found = 0;
+                for (float[] q : queries) {
+                    Set<Long> truth = new HashSet<>();
+                    for (QuantizedVectorStore.Hit h : store.searchExact(q, QuantizationBenchmark.K)) truth.add(h.id);
+                    for (QuantizedVectorStore.Hit h : QuantizationBenchmark.search(store, mode, q)) if (truth.contains(h.id)) found++;
+                }
+                int bytes = mode.equals("exact") ? dim * Float.BYTES : (Integer) store.stats().get("heapBytesPerVector");
+                System.out.printf("%-10s %10.3f %20d%n", mode, found / (double) (queries.length * QuantizationBenchmark.K), bytes);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
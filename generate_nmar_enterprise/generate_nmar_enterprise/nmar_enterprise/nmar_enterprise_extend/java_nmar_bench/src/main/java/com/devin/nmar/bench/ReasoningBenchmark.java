@@ -0,0 +1,67 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.bench;
+
+import com.devin.nmar.core.NeuroMesh;
+import com.devin.nmar.learning.AdaptiveLearner;
+import com.devin.nmar.meta.MetaReasoner;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * ReasoningBenchmark - AdaptiveLearner.apply (all-pairs edge updates over the active keys)
+ * and MetaReasoner.evaluate, swept over mesh size and active key count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReasoningBenchmark {
+    @Param({"256", "4096"})
+    public int meshSize;
+
+    @Param({"8", "32"})
+    public int activeKeys;
+
+    private AdaptiveLearner learner;
+    private final MetaReasoner meta = new MetaReasoner();
+    private List<List<String>> keySets;
+    private final Map<String,Object> ctx = Collections.singletonMap("domainMismatch", Boolean.FALSE);
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        Logger.getLogger(NeuroMesh.class.getName()).setLevel(java.util.logging.Level.WARNING);
+        NeuroMesh mesh = new NeuroMesh(0.001, meshSize);
+        for (int i=0;i<meshSize;i++) mesh.createNode("sem:" + i, 0.5);
+        learner = new AdaptiveLearner(mesh, 100);
+        keySets = new ArrayList<>();
+        Random r = new Random(42);
+        for (int s=0;s<64;s++) {
+            List<String> ks = new ArrayList<>();
+            for (int k=0;k<activeKeys;k++) ks.add("sem:" + r.nextInt(meshSize));
+            keySets.add(ks);
+        }
+    }
+
+    @Benchmark
+    public void learnerApply() {
+        learner.apply(keySets.get(ThreadLocalRandom.current().nextInt(keySets.size())), 0.55);
+    }
+
+    @Benchmark
+    public MetaReasoner.Feedback metaEvaluate() {
+        return meta.evaluate("Projected sea-level rise near urban coasts will accelerate infrastructure risks.",
+                "Recommend adaptation funding and coastal managed retreat studies.", 0.8, ctx);
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
@@ -0,0 +1,101 @@
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/
+package com.devin.nmar.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * NeuroMeshBenchmark - getOrCreate/addEdge/propagate/prune over meshes of increasing size.
+ * Lives in com.devin.nmar.core so prune can be measured without going through propagate.
+ * The mesh is shared, so running with -t N measures contention on the mesh monitor.
+ * prune runs on its own per-thread mesh that is re-seeded before every call with
+ * meshSize/8 idle nodes, each holding one edge under the prune threshold, so every call
+ * removes that many edges and nodes instead of scanning a mesh with nothing to prune.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeuroMeshBenchmark {
+    @Param({"256", "1024", "4096"})
+    public int meshSize;
+
+    @Param({"4"})
+    public int edgesPerNode;
+
+    private NeuroMesh mesh;
+    private String[] keys;
+    private long[] ids;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        Logger.getLogger(NeuroMesh.class.getName()).setLevel(java.util.logging.Level.WARNING);
+        mesh = new NeuroMesh(0.001, meshSize);
+        keys = new String[meshSize];
+        ids = new long[meshSize];
+        for (int i=0;i<meshSize;i++) {
+            keys[i] = "sem:" + i;
+            ids[i] = mesh.createNode(keys[i], 0.5).id;
+        }
+        Random r = new Random(42);
+        for (int i=0;i<meshSize;i++) for (int e=0;e<edgesPerNode;e++) mesh.addEdge(ids[i], ids[r.nextInt(meshSize)], 0.05);
+    }
+
+    @Benchmark
+    public NeuroMesh.Node getOrCreateExisting() {
+        return mesh.getOrCreate(keys[ThreadLocalRandom.current().nextInt(meshSize)], 0.5);
+    }
+
+    @Benchmark
+    public void addEdge() {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        mesh.addEdge(ids[r.nextInt(meshSize)], ids[r.nextInt(meshSize)], 0.01);
+    }
+
+    @Benchmark
+    public void propagate() {
+        mesh.propagate(0.04, 1);
+    }
+
+    @Benchmark
+    public int prune(PruneState s) {
+        s.mesh.prune(Collections.emptySet());
+        return s.mesh.nodeCount();
+    }
+
+    @State(Scope.Thread)
+    public static class PruneState {
+        NeuroMesh mesh;
+        long[] ids;
+
+        @Setup(Level.Trial)
+        public void build(NeuroMeshBenchmark b) {
+            mesh = new NeuroMesh(0.001, b.meshSize * 2);
+            ids = new long[b.meshSize];
+            for (int i=0;i<ids.length;i++) ids[i] = mesh.createNode("sem:" + i, 0.5).id;
+            Random r = new Random(42);
+            for (long id : ids) for (int e=0;e<b.edgesPerNode;e++) mesh.addEdge(id, ids[r.nextInt(ids.length)], 0.05);
+        }
+
+        // what the previous call pruned comes back: one weak edge per idle node
+        @Setup(Level.Invocation)
+        public void seed() {
+            for (int i=0;i<ids.length/8;i++) {
+                long idle = mesh.createNode("idle:" + i, 0.0).id;
+                mesh.addEdge(idle, ids[i * 8], 0.0005);
+            }
+        }
+    }
+}
+
+/*
+Copyright © 2025 Devin B. Royal. All Rights Reserved.
+*/